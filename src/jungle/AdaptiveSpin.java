@@ -0,0 +1,39 @@
+/*
+The adaptive wait strategy for the lock-based Ladder, see WaitStrategy.adaptiveSpinThenPark().
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.function.LongSupplier;
+
+
+/** State of WaitStrategy.adaptiveSpinThenPark(), shared by all apes on one ladder. */
+final class AdaptiveSpin implements WaitStrategy {
+    private static final int MIN_SPINS = 16;
+    private static final int MAX_SPINS = 1 << 14;
+
+    // Updated without synchronization on purpose: a lost update only nudges the heuristic
+    private volatile int spinLimit = 1 << 10;
+
+    @Override
+    public boolean spinUntilChanged(LongSupplier changes, long seen, boolean timed, long deadline)
+            throws InterruptedException {
+        int limit = spinLimit;
+        for (int round = 0; round < limit; round++) {
+            if (changes.getAsLong() != seen) {
+                spinLimit = Math.min(MAX_SPINS, limit << 1);
+                return true;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (timed && System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        spinLimit = Math.max(MIN_SPINS, limit >> 1);
+        return false;
+    }
+}
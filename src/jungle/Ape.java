@@ -0,0 +1,138 @@
+/*
+"Apes and Ladder" implementation for lab 5: the apes that cross.
+Collaborators: Professor Dave Wonnacott, Professor John Dougherty, Vincent Yu
+Date: 04/14/2021
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * @author davew & Vincent Yu
+ *
+ * The Ape class is a task that can run on any thread,
+ *  since all Apes can go about their activities concurrently
+ *  (see ApeLauncher for running lots of them without one platform thread each).
+ * Note that each Ape has his or her own name and direction,
+ *  but in this system, many Apes will share one Ladder.
+ * By default an Ape waits as long as it takes for every rung, so every Ape gets across eventually.
+ * After giveUpAfter(), no Ape waits longer than stepTimeout for a rung, so a crossing takes at most
+ *  maxAttempts * (stepTimeout + backoff) to get on plus (rungs - 1) * (rung delay + stepTimeout) to get across;
+ *  an Ape that runs out of attempts goes home, and one that runs out of time on the ladder falls off.
+ */
+class Ape implements Runnable {
+    static private final boolean debug = true;  // "static" is shared by all Apes
+    static private final double rungDelayMin = 0.8;
+    static private final double rungDelayVar = 1.0;
+    static private volatile double stepTimeout = 0.0;  // longest wait for any one rung, in seconds; 0 for no limit
+    static private volatile int maxAttempts = 1;       // tries at getting on before going home
+    private String _name;
+    private SharedLadder _ladderToCross;
+    private LadderNetwork _network;   // if set, the ape picks its ladder when it arrives
+    private boolean _goingEast; // if false, going west
+
+    /**
+     * Make every Ape give up on a rung it has waited too long for, instead of waiting as long as it takes.
+     * @param seconds: double type. Longest wait for any one rung; 0 to wait as long as it takes again.
+     * @param attempts: integer type. Tries at getting on before going home, at least 1.
+     */
+    public static void giveUpAfter(double seconds, int attempts) {
+        if (seconds < 0 || attempts < 1) {
+            throw new IllegalArgumentException("need a timeout of at least 0 and at least 1 attempt, got " + seconds
+                    + " s and " + attempts);
+        }
+        stepTimeout = seconds;
+        maxAttempts = attempts;
+    }
+
+    public Ape(String name, SharedLadder toCross, boolean goingEast) {
+        _name = name;
+        _ladderToCross = toCross;
+        _goingEast = goingEast;
+    }
+
+    public Ape(String name, LadderNetwork network, boolean goingEast) {
+        _name = name;
+        _network = network;
+        _goingEast = goingEast;
+    }
+
+    public void run() {
+        int startRung = 0, move = 0, endRung = 0;
+
+        // Try to get on. With a step timeout, an ape that has waited that long for its first rung backs off for a while
+        //  and tries again, possibly on a different ladder, and goes home after maxAttempts.
+        for (int attempt = 1; ; attempt++) {
+            if (_network != null) {
+                _ladderToCross = _network.route(_goingEast);
+                if (debug)
+                    System.out.println("Ape " + _name + " picks ladder " + _network.ladders().indexOf(_ladderToCross));
+            }
+            System.out.println("Ape " + _name + " starting to go " + (_goingEast?"East.":"West."));
+            if (_goingEast) {
+                startRung = 0;
+                endRung = _ladderToCross.nRungs()-1;
+                move = 1;
+            } else {
+                startRung = _ladderToCross.nRungs()-1;
+                endRung = 0;
+                move = -1;
+            }
+
+            if (debug)
+                System.out.println("Ape " + _name + " wants rung " + startRung);
+            try {
+                if (grab(startRung))
+                    break;
+            } catch (InterruptedException e) {
+                System.out.println("  Ape " + _name + " was called away before getting on.");
+                return;  // never got on
+            }
+            if (attempt == maxAttempts) {
+                System.out.println("  Ape " + _name + " gives up on crossing and goes home.");
+                return;  // never got on
+            }
+            System.out.println("  Ape " + _name + " got tired of waiting and backs off for a while.");
+            Jungle.tryToSleep(rungDelayMin * (1 << attempt), rungDelayVar);
+        }
+
+        for (int i = startRung+move; i!=endRung+move; i+=move) {
+            Jungle.tryToSleep(rungDelayMin, rungDelayVar);
+            if (debug)
+                System.out.println("Ape " + _name + " wants rung " + i);
+            boolean moved;
+            try {
+                // Grab rung i and let go of the one behind in one step
+                moved = stepTimeout == 0 ? _ladderToCross.advance(_name, i-move, i)
+                        : _ladderToCross.tryAdvance(_name, i-move, i, Math.round(stepTimeout * 1000),
+                                TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                moved = false;
+            }
+            if (!moved) {
+                // Hanging on forever would hold up every ape behind us, so let go of the ladder altogether
+                System.out.println("Ape " + _name + ": AAaaaaaah!  falling off the ladder :-(");
+                System.out.println("  Ape " + _name + " has been eaten by the crocodiles!");
+                _ladderToCross.fallOff(_name, i-move, _goingEast);
+                return;  //  died
+            }
+        }
+        if (debug)
+            System.out.println("Ape " + _name + " releasing " + endRung);
+        _ladderToCross.releaseRung(_name, endRung, _goingEast);
+
+        return;  // survived!
+    }
+
+    /** Wait for the first rung, at most stepTimeout if there is one. */
+    private boolean grab(int rung) throws InterruptedException {
+        if (stepTimeout == 0) {
+            return _ladderToCross.grabRung(_name, rung, _goingEast);
+        }
+        return _ladderToCross.tryGrabRung(_name, rung, _goingEast, Math.round(stepTimeout * 1000),
+                TimeUnit.MILLISECONDS);
+    }
+}
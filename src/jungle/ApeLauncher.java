@@ -0,0 +1,186 @@
+/*
+Ape launcher for the "Apes and Ladder" lab.
+
+Apes are plain Runnable tasks, so they don't each need their own platform thread. The launcher releases apes onto the
+ladder at a steady arrival rate and runs them on virtual threads when the JDK has them (Java 21 and later), or on a
+bounded thread pool otherwise. With a bounded pool, apes that have arrived but have no thread yet simply wait in the
+pool's queue, which costs a few dozen bytes per ape instead of a native thread stack, so even "infinite" apes
+(count -1) only fill memory up to the in-flight limit.
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/** Releases streams of apes onto a ladder network and runs them on a shared executor. */
+class ApeLauncher {
+
+    // How long an arrival waits before trying again when the in-flight limit is reached
+    private static final long BACKLOG_RETRY_MILLIS = 10;
+
+    // Attributes
+    private final LadderNetwork network;
+    private final ExecutorService apes;
+    private final Semaphore inFlight;
+    private final AtomicInteger activeStreams = new AtomicInteger(1);   // 1 extra until shutdownWhenDone()
+    private final ScheduledExecutorService arrivals =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "ape-arrivals"));
+
+    /**
+     * Constructor for object initialization.
+     * @param ladder: the ladder every ape will cross.
+     * @param apes: the executor that runs the apes.
+     * @param maxInFlight: integer type. Most apes that may have arrived but not yet finished crossing at any time.
+     */
+    public ApeLauncher(SharedLadder ladder, ExecutorService apes, int maxInFlight) {
+        this(new LadderNetwork(ladder), apes, maxInFlight);
+    }
+
+    /**
+     * Constructor for object initialization.
+     * @param network: the ladders to cross; every ape picks one when it arrives.
+     * @param apes: the executor that runs the apes.
+     * @param maxInFlight: integer type. Most apes that may have arrived but not yet finished crossing at any time.
+     */
+    public ApeLauncher(LadderNetwork network, ExecutorService apes, int maxInFlight) {
+        this.network = network;
+        this.apes = apes;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Executor that runs every ape on its own virtual thread.
+     * @return the executor, or null if this JDK has no virtual threads.
+     */
+    public static ExecutorService virtualThreads() {
+        try {
+            // Looked up reflectively so the lab still compiles on older JDKs
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Executor that runs apes on a fixed number of platform threads.
+     * @param threads: integer type. Size of the pool.
+     * @return the executor.
+     */
+    public static ExecutorService boundedPool(int threads) {
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Virtual threads if available, otherwise a bounded pool sized for the machine.
+     * @return the executor.
+     */
+    public static ExecutorService defaultExecutor() {
+        ExecutorService executor = virtualThreads();
+        return executor != null ? executor : boundedPool(Math.max(64, 16 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Start a stream of apes going one way. Returns immediately; the apes arrive in the background.
+     * @param prefix: string type. Prefix of the ape names, e.g. "E-".
+     * @param goingEast: boolean type. Direction of every ape in the stream.
+     * @param count: integer type. How many apes to send, or -1 for infinitely many.
+     * @param secMin: double type. Shortest gap between consecutive apes, in seconds.
+     * @param secVar: double type. Random extra gap between consecutive apes, in seconds.
+     */
+    public void launch(String prefix, boolean goingEast, int count, double secMin, double secVar) {
+        activeStreams.incrementAndGet();
+        arrivals.execute(new Arrival(prefix, goingEast, count, secMin, secVar));
+    }
+
+    /** No more streams will be launched: wind down once every finite stream has sent all of its apes. */
+    public void shutdownWhenDone() {
+        streamDone();
+    }
+
+    /** Stop sending apes right away and let the ones that already arrived finish. */
+    public void shutdown() {
+        arrivals.shutdownNow();
+        apes.shutdown();
+    }
+
+    /** Called once per finished stream (and once by shutdownWhenDone). */
+    private void streamDone() {
+        if (activeStreams.decrementAndGet() == 0) {
+            arrivals.shutdown();
+            apes.shutdown();
+        }
+    }
+
+    /**
+     * Wait until every ape that arrived has finished, after the launcher has shut down.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitTermination() throws InterruptedException {
+        apes.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /** One stream of arrivals, rescheduling itself after every ape. */
+    private class Arrival implements Runnable {
+        private final String prefix;
+        private final boolean goingEast;
+        private final double secMin;
+        private final double secVar;
+        private int nRemaining;
+        private int apeCounter = 1;
+
+        Arrival(String prefix, boolean goingEast, int count, double secMin, double secVar) {
+            this.prefix = prefix;
+            this.goingEast = goingEast;
+            this.nRemaining = count;
+            this.secMin = secMin;
+            this.secVar = secVar;
+        }
+
+        @Override
+        public void run() {
+            if (nRemaining == 0) {
+                streamDone();
+                return;
+            }
+            if (arrivals.isShutdown()) {
+                return;
+            }
+
+            // Too many apes in the jungle already: check again shortly instead of queueing without bound
+            if (!inFlight.tryAcquire()) {
+                arrivals.schedule(this, BACKLOG_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            Ape ape = new Ape(prefix + apeCounter, network, goingEast);
+            try {
+                apes.execute(() -> {
+                    try {
+                        ape.run();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // shutdown() came in meanwhile: the ape never arrives, so give its place back
+                inFlight.release();
+                return;
+            }
+            apeCounter++;
+            if (nRemaining > 0)
+                nRemaining--;
+
+            long gapNanos = Math.round((secMin + ThreadLocalRandom.current().nextDouble() * secVar) * 1e9);
+            arrivals.schedule(this, gapNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+Direction-switching policies for the lock-based Ladder.
+
+The ladder carries apes in batches: the first ape admitted in a direction starts a batch, and the batch keeps admitting
+apes going the same way for as long as the policy allows. Once the policy closes the batch, the apes already on the
+ladder finish crossing and the next batch goes the other way. The policy is only consulted while apes are waiting on
+the other side; with nobody waiting there, the current direction simply stays open.
+ */
+
+package jungle;
+
+
+/** Decides how long the ladder keeps carrying apes in one direction before letting the other side go. */
+interface DirectionPolicy {
+
+    /**
+     * Decide whether the current batch may admit one more ape going the current ladder direction.
+     * @param admitted: integer type. Number of apes admitted in the current batch so far.
+     * @param batchNanos: long type. Time since the current batch started.
+     * @param onLadder: integer type. Number of apes on the ladder right now.
+     * @param waitingSame: integer type. Apes waiting to get on in the current direction.
+     * @param waitingOther: integer type. Apes waiting to get on in the other direction (always at least 1).
+     * @return true to keep the batch open, false to close it.
+     */
+    boolean continueBatch(int admitted, long batchNanos, int onLadder, int waitingSame, int waitingOther);
+
+    /**
+     * The original rule: keep the direction while there are apes on the ladder, then hand the empty ladder to the
+     *  other side. A steady stream in one direction can starve the other side.
+     * @return the policy.
+     */
+    static DirectionPolicy untilClear() {
+        return (admitted, batchNanos, onLadder, waitingSame, waitingOther) -> onLadder > 0;
+    }
+
+    /**
+     * Strict alternation: one ape per direction whenever both sides are waiting.
+     * @return the policy.
+     */
+    static DirectionPolicy alternate() {
+        return boundedBatch(1);
+    }
+
+    /**
+     * Let at most the given number of apes through per batch while the other side is waiting.
+     * @param maxBatch: integer type. Largest batch size, at least 1.
+     * @return the policy.
+     */
+    static DirectionPolicy boundedBatch(int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("batch size must be at least 1: " + maxBatch);
+        }
+        return (admitted, batchNanos, onLadder, waitingSame, waitingOther) -> admitted < maxBatch;
+    }
+
+    /**
+     * Keep each direction open for a fixed time slice while the other side is waiting.
+     * @param sliceNanos: long type. Length of the time slice.
+     * @return the policy.
+     */
+    static DirectionPolicy timeSlice(long sliceNanos) {
+        return (admitted, batchNanos, onLadder, waitingSame, waitingOther) -> admitted < 1 || batchNanos < sliceNanos;
+    }
+
+    /**
+     * Size each batch in proportion to how many apes wait on each side: the busier side gets longer batches, but every
+     *  batch is between 1 and 4 * base apes long.
+     * @param base: integer type. Batch size when both sides have the same number of apes waiting.
+     * @return the policy.
+     */
+    static DirectionPolicy queueWeighted(int base) {
+        if (base < 1) {
+            throw new IllegalArgumentException("base batch size must be at least 1: " + base);
+        }
+        return (admitted, batchNanos, onLadder, waitingSame, waitingOther) -> {
+            long quota = Math.max(1, Math.min(4L * base, (long) base * waitingSame / waitingOther));
+            return admitted < quota;
+        };
+    }
+}
@@ -0,0 +1,87 @@
+/*
+"Apes and Ladder" implementation for lab 5.
+Collaborators: Professor Dave Wonnacott, Professor John Dougherty, Vincent Yu
+Date: 04/14/2021
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.concurrent.TimeUnit;
+import watchdog.Watchdog;
+
+
+/**
+ * @author davew
+ *
+ * This class just exists to create the objects and threads we need:
+ *  One ladder and many apes.
+ * You should not need to change anything here unless you want to
+ *  use it to add other objects that aren't associated with some
+ *  existing object (an ape or ladder).
+ */
+class Jungle {
+
+    private static java.util.Random dice = new java.util.Random(); // random number generator, for delays mostly
+    public static void tryToSleep(double secMin, double secVar) {
+        try {
+            java.lang.Thread.sleep(Math.round(secMin*1000) + Math.round(dice.nextDouble()*(secVar)*1000));
+        } catch (InterruptedException e) {
+            System.out.println("Not Handling interruptions yet ... just going on with the program without as much sleep as needed ... how appropriate!");
+        }
+    }
+
+    public static void main(String[] args) {
+        //
+        //  A solution for Lab 3 should work (have no deadlock, livelock, or starvation)
+        //    regardless of the settings of the configuration variables below,
+        //    i.e., even if there are infinite apes going both ways.
+        //  It should also work regardless of timing, so any values for the
+        //    timing configuration should work, and there should be no way to
+        //    add spurious "tryToSleep"'s *anywhere* to mess it up.
+        //
+        int eastBound = 10;     // how many apes going East? use -1 for inifinity
+        int westBound = 10;     // how many apes going West? use -1 for inifinity
+        double apeMin = 4.0;    // how long to wait between consecutive apes going one way
+        double apeVar = 1.0;    // 4 seconds is usually enough, but vary a bit to see what happens
+        double sideMin = 5.0;   // how long to wait before coming back across
+        double sideVar = 0.0;   // 5.0 seconds is usually enough
+        double stepTimeout = 0.0;   // longest an ape waits for any one rung before it gives up (and falls off, if it
+                                    //  is on the ladder already), e.g. 10.0; 0 waits as long as it takes
+        int maxAttempts = 3;        // with a stepTimeout, tries at getting on before an ape goes home
+
+        // create a Ladder (use "new LockFreeLadder(4)" to try the lock-free version)
+        // list more ladders here, e.g. "new Ladder(6, true)", and every ape will take whichever gets it across soonest
+        Ladder ladder = new Ladder(4, true);
+        LadderNetwork l = new LadderNetwork(ladder);
+
+        // watch the ladder live in JConsole (jungle:type=Ladder,name=main), or print a report now and then with
+        //  ladder.enableMetrics().startPeriodicDump(System.out, 10, java.util.concurrent.TimeUnit.SECONDS)
+        // the watchdog stays quiet unless apes deadlock or one holds the ladder lock for over 5 seconds (pass true
+        //  instead of false to also see how contended the ladder lock is every period)
+        new Watchdog(System.out, 1, 5, TimeUnit.SECONDS, false).start();
+        try {
+            ladder.enableMetrics().register("main");
+        } catch (javax.management.JMException e) {
+            System.out.println("Could not publish ladder metrics over JMX: " + e);
+        }
+
+        // Apes are plain tasks, so even infinite apes don't need a thread each: the launcher runs them on virtual
+        //  threads when the JDK has them, or on a bounded pool, and caps how many can be around at once
+        ApeLauncher launcher = new ApeLauncher(l, ApeLauncher.defaultExecutor(), 1_000_000);
+        if (stepTimeout > 0) {
+            Ape.giveUpAfter(stepTimeout, maxAttempts);
+        }
+
+        // create some Eastbound apes who want that ladder
+        // (pass apeMin, apeVar instead of 0, 0 to space them out)
+        launcher.launch("E-", true, eastBound, 0, 0);
+
+        // and create some Westbound apes who want the SAME ladder
+        // (there is no pause between the two groups: both streams arrive at the same time)
+        launcher.launch("W-", false, westBound, 0, 0);
+
+        // no more streams: the launcher winds down once every ape has arrived and crossed
+        launcher.shutdownWhenDone();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,357 @@
+/*
+Discrete-event simulation of the "Apes and Ladder" lab.
+
+Usage:
+    java jungle.JungleSimulation [seed] [apes per run]
+
+    Real apes sleep 0.8 to 1.8 s on every rung, so even a small scenario takes minutes of wall-clock time. The
+    simulation drives the very same ladder classes from a single thread instead: time is a virtual clock, apes are
+    entries in an event queue, and an ape that cannot grab a rung is parked in that rung's wait list until a release
+    lets it retry (through the ladder's non-blocking tryGrabRung). Apes waiting to get on queue up in arrival order on
+    their own side, and only the ape at the front of a queue retries, so a long queue costs nothing per release. The
+    queued apes are counted on the ladder (SharedLadder.addWaiting), so its DirectionPolicy sees both queues just as
+    it sees apes blocked in grabRung, and decides which side gets a clear ladder. Nothing ever sleeps, so millions of
+    crossings take seconds, and the same seed always gives the same run.
+
+    main() sweeps rung counts and arrival rates and prints throughput and latency for every combination, then runs
+    the busiest rate on a TwoLaneLadder and checks that every ape got across.
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.Random;
+import metrics.LatencyHistogram;
+
+
+/** Single-threaded, virtual-clock simulation of apes crossing one ladder. */
+class JungleSimulation {
+
+    /** Source of random durations (in virtual nanoseconds). */
+    interface Delay {
+        long sample(Random dice);
+
+        /**
+         * Uniform delay between secMin and secMin + secVar seconds, like Jungle.tryToSleep.
+         * @return the delay distribution.
+         */
+        static Delay uniform(double secMin, double secVar) {
+            return dice -> Math.round((secMin + dice.nextDouble() * secVar) * 1e9);
+        }
+
+        /**
+         * Exponentially distributed delay, e.g. the gaps between Poisson arrivals.
+         * @param secMean: double type. Mean delay in seconds.
+         * @return the delay distribution.
+         */
+        static Delay exponential(double secMean) {
+            return dice -> Math.round(-Math.log(1.0 - dice.nextDouble()) * secMean * 1e9);
+        }
+    }
+
+    /** One ape in the simulation. */
+    private static final class SimApe {
+        final boolean goingEast;
+        final long arrived;
+        int rung = -1;              // rung currently held, -1 before getting on
+
+        SimApe(boolean goingEast, long arrived) {
+            this.goingEast = goingEast;
+            this.arrived = arrived;
+        }
+    }
+
+    /** A scheduled event: an arrival on one side (ape == null) or an ape done with its current rung. */
+    private static final class Event implements Comparable<Event> {
+        final long time;
+        final long sequence;        // breaks ties in scheduling order, so runs are reproducible
+        final SimApe ape;
+        final boolean eastArrival;
+
+        Event(long time, long sequence, SimApe ape, boolean eastArrival) {
+            this.time = time;
+            this.sequence = sequence;
+            this.ape = ape;
+            this.eastArrival = eastArrival;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    // Configuration
+    private final SharedLadder ladder;
+    private final Random dice;
+    private final Delay eastArrivals;
+    private final Delay westArrivals;
+    private final Delay rungDelay;
+
+    // Simulation state
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final ArrayDeque<SimApe>[] climbingEast;          // eastbound apes on the ladder waiting for each rung
+    private final ArrayDeque<SimApe>[] climbingWest;          // likewise westbound, who may be on a lane of their own
+    private final ArrayDeque<SimApe> eastQueue = new ArrayDeque<>();
+    private final ArrayDeque<SimApe> westQueue = new ArrayDeque<>();
+    private long now;
+    private long sequence;
+    private long arrivalsLeft;
+    private long crossings;
+
+    // Results
+    private final LatencyHistogram crossingLatency = new LatencyHistogram();
+    private final LatencyHistogram entryWait = new LatencyHistogram();
+
+    /**
+     * Constructor for object initialization.
+     * @param ladder: the ladder to simulate. Only its non-blocking calls are used.
+     * @param seed: long type. Seed for every random choice in the run.
+     * @param eastArrivals: gaps between consecutive eastbound apes (null for none).
+     * @param westArrivals: gaps between consecutive westbound apes (null for none).
+     * @param rungDelay: how long an ape holds each rung.
+     */
+    @SuppressWarnings("unchecked")
+    public JungleSimulation(SharedLadder ladder, long seed, Delay eastArrivals, Delay westArrivals, Delay rungDelay) {
+        this.ladder = ladder;
+        this.dice = new Random(seed);
+        this.eastArrivals = eastArrivals;
+        this.westArrivals = westArrivals;
+        this.rungDelay = rungDelay;
+        this.climbingEast = (ArrayDeque<SimApe>[]) new ArrayDeque<?>[ladder.nRungs()];
+        this.climbingWest = (ArrayDeque<SimApe>[]) new ArrayDeque<?>[ladder.nRungs()];
+        for (int i = 0; i < climbingEast.length; i++) {
+            climbingEast[i] = new ArrayDeque<>();
+            climbingWest[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Run until the given number of apes have arrived and every one of them has crossed.
+     * @param apes: long type. Total number of apes to send, both sides together.
+     * @return this simulation, for reading the results.
+     */
+    public JungleSimulation run(long apes) {
+        arrivalsLeft = apes;
+        if (eastArrivals != null) {
+            schedule(eastArrivals.sample(dice), null, true);
+        }
+        if (westArrivals != null) {
+            schedule(westArrivals.sample(dice), null, false);
+        }
+
+        while (!events.isEmpty()) {
+            Event event = events.poll();
+            now = event.time;
+            if (event.ape == null) {
+                arrive(event.eastArrival);
+            } else {
+                step(event.ape);
+            }
+        }
+        return this;
+    }
+
+    /** @return the number of completed crossings. */
+    public long crossings() {
+        return crossings;
+    }
+
+    /** @return the virtual time at the end of the run, in nanoseconds. */
+    public long elapsed() {
+        return now;
+    }
+
+    /** @return arrival-to-other-side latency of every crossing, in virtual nanoseconds. */
+    public LatencyHistogram crossingLatency() {
+        return crossingLatency;
+    }
+
+    /** @return time every ape waited for its first rung, in virtual nanoseconds. */
+    public LatencyHistogram entryWait() {
+        return entryWait;
+    }
+
+    /**
+     * A new ape shows up on one side and tries to get on the ladder.
+     * @param goingEast: boolean type. Which side the ape arrived on.
+     */
+    private void arrive(boolean goingEast) {
+        if (arrivalsLeft <= 0) {
+            return;
+        }
+        arrivalsLeft--;
+        schedule(now + (goingEast ? eastArrivals : westArrivals).sample(dice), null, goingEast);
+
+        SimApe ape = new SimApe(goingEast, now);
+        ArrayDeque<SimApe> queue = goingEast ? eastQueue : westQueue;
+        // No cutting in line: only try straight away if nobody on this side is waiting already
+        if (queue.isEmpty() && ladder.tryGrabRung(goingEast ? "E" : "W", entryRung(goingEast), goingEast)) {
+            moved(ape, entryRung(goingEast));
+        } else {
+            queue.addLast(ape);
+            ladder.addWaiting(goingEast, 1);
+        }
+    }
+
+    /**
+     * An ape is done with its current rung: move on to the next one, or step off at the far end.
+     * @param ape: the ape.
+     */
+    private void step(SimApe ape) {
+        int endRung = ape.goingEast ? ladder.nRungs() - 1 : 0;
+        if (ape.rung == endRung) {
+            release(ape.rung, ape.goingEast);
+            crossings++;
+            crossingLatency.record(now - ape.arrived);
+        } else {
+            tryMove(ape, ape.rung + (ape.goingEast ? 1 : -1));
+        }
+    }
+
+    /**
+     * Try to grab the next rung. On success the previous rung is released; on failure the ape waits in the target
+     *  rung's wait list, still holding its current rung.
+     * @param ape: the ape, already on the ladder.
+     * @param target: integer type. The rung to grab.
+     */
+    private void tryMove(SimApe ape, int target) {
+        if (ladder.tryGrabRung(ape.goingEast ? "E" : "W", target, ape.goingEast)) {
+            moved(ape, target);
+        } else {
+            (ape.goingEast ? climbingEast : climbingWest)[target].addLast(ape);
+        }
+    }
+
+    /**
+     * Bookkeeping for an ape that just grabbed the target rung.
+     * @param ape: the ape.
+     * @param target: integer type. The rung it grabbed.
+     */
+    private void moved(SimApe ape, int target) {
+        int previous = ape.rung;
+        ape.rung = target;
+
+        if (previous < 0) {
+            entryWait.record(now - ape.arrived);
+        }
+        schedule(now + rungDelay.sample(dice), ape, false);
+        if (previous >= 0) {
+            release(previous, ape.goingEast);
+        }
+    }
+
+    /**
+     * Release a rung and let waiting apes retry: first the apes waiting for that rung, and once the ladder is clear
+     *  also the apes waiting at either end, starting with the side the ladder would hand over to.
+     * @param which: integer type. The rung to release.
+     * @param goingEast: boolean type. Direction of the ape letting go.
+     */
+    private void release(int which, boolean goingEast) {
+        ladder.releaseRung("", which, goingEast);
+
+        // Apes already on the ladder go first, so the ladder keeps draining. Only apes going the same way can want
+        //  the rung: on one lane nobody else is climbing, and on two lanes the others are on the other lane.
+        ArrayDeque<SimApe> behind = (goingEast ? climbingEast : climbingWest)[which];
+        SimApe next = behind.peekFirst();
+        if (next != null && ladder.tryGrabRung(next.goingEast ? "E" : "W", which, next.goingEast)) {
+            behind.pollFirst();
+            moved(next, which);
+        }
+
+        if (ladder.getNumApe() == 0) {
+            // Like Ladder.handOver(): the other side first, and the policy decides whether it may go
+            boolean otherSide = !ladder.isEastBound();
+            admitNext(otherSide);
+            admitNext(!otherSide);
+        } else {
+            if (which == entryRung(true)) {
+                admitNext(true);
+            }
+            if (which == entryRung(false)) {
+                admitNext(false);
+            }
+        }
+    }
+
+    /**
+     * Let the ape at the front of one side's queue try to get on.
+     * @param goingEast: boolean type. Which side's queue.
+     */
+    private void admitNext(boolean goingEast) {
+        ArrayDeque<SimApe> queue = goingEast ? eastQueue : westQueue;
+        SimApe next = queue.peekFirst();
+        if (next == null) {
+            return;
+        }
+        // tryGrabRung counts the ape as waiting by itself while the policy decides
+        ladder.addWaiting(goingEast, -1);
+        if (ladder.tryGrabRung(goingEast ? "E" : "W", entryRung(goingEast), goingEast)) {
+            queue.pollFirst();
+            moved(next, entryRung(goingEast));
+        } else {
+            ladder.addWaiting(goingEast, 1);
+        }
+    }
+
+    /**
+     * First rung for an ape going the given way.
+     * @param goingEast: boolean type. Direction of the ape.
+     * @return the rung index.
+     */
+    private int entryRung(boolean goingEast) {
+        return goingEast ? 0 : ladder.nRungs() - 1;
+    }
+
+    private void schedule(long time, SimApe ape, boolean eastArrival) {
+        events.add(new Event(time, sequence++, ape, eastArrival));
+    }
+
+    /**
+     * Sweep rung counts and arrival rates with real-ape rung delays and print one line per combination.
+     */
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 356;
+        long apes = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+
+        // Same rung delay as the real apes: 0.8 to 1.8 seconds
+        Delay rungDelay = Delay.uniform(0.8, 1.0);
+        int[] rungCounts = {2, 4, 8, 16};
+        double[] apesPerMinute = {6, 12, 24, 48};
+
+        System.out.println("seed " + seed + ", " + apes + " apes per run, Poisson arrivals split evenly east/west\n");
+        long start = System.nanoTime();
+        long total = 0;
+        for (int rungs : rungCounts) {
+            for (double rate : apesPerMinute) {
+                Delay gaps = Delay.exponential(120.0 / rate);
+                JungleSimulation sim = new JungleSimulation(new Ladder(rungs, false), seed, gaps, gaps, rungDelay)
+                        .run(apes);
+                total += sim.crossings();
+                System.out.printf("%2d rungs %5.1f apes/min: %7.2f crossings/min   crossing %s%n", rungs, rate,
+                        sim.crossings() / (sim.elapsed() / 60e9), sim.crossingLatency().summaryMillis());
+            }
+        }
+
+        // Two lanes, with every ape driven from this one thread: all of them have to get across
+        double busiest = apesPerMinute[apesPerMinute.length - 1];
+        Delay busiestGaps = Delay.exponential(120.0 / busiest);
+        System.out.println();
+        for (int rungs : rungCounts) {
+            JungleSimulation sim = new JungleSimulation(new TwoLaneLadder(rungs, false), seed, busiestGaps,
+                    busiestGaps, rungDelay).run(apes);
+            if (sim.crossings() != apes) {
+                throw new IllegalStateException("two lanes of " + rungs + " rungs: only " + sim.crossings() + " of "
+                        + apes + " apes got across");
+            }
+            total += sim.crossings();
+            System.out.printf("%2d rungs %5.1f apes/min, two lanes: %7.2f crossings/min   crossing %s%n", rungs,
+                    busiest, sim.crossings() / (sim.elapsed() / 60e9), sim.crossingLatency().summaryMillis());
+        }
+        System.out.printf("%nsimulated %d crossings in %.1f s of wall-clock time%n", total,
+                (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,832 @@
+/*
+"Apes and Ladder" implementation for lab 5: the ladder the apes share.
+Collaborators: Professor Dave Wonnacott, Professor John Dougherty, Vincent Yu
+Date: 04/14/2021
+ */
+
+package jungle;
+
+// Java Imports
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.function.LongSupplier;
+import watchdog.InstrumentedLock;
+
+
+/**
+ * @author davew + Vincent Yu
+ *
+ * The Ladder class is NOT a kind of thread,
+ *  since it doesn't actually do anything except get used by Apes.
+ * The ladder just keeps track of how many apes are on each rung.
+ *
+ * The general idea is as follows: whichever ape grabs the ladder first decides the direction to go until the ladder
+ *  is clear. The apes on the opposite site will wait until the ladder is signaled cleared. When apes are grabbing
+ *  the ladder, the later ape checks if the rung in front has another ape on it, and wait if it's not available.
+ *
+ * Every rung has its own wait queue, and each side of the ladder has its own direction queue, so a release only wakes
+ *  the one ape that can actually move next instead of every parked ape.
+ *
+ * A rung holds one ape unless the ladder is built with larger capacities, in which case apes going the same way
+ *  share (and pass each other on) the wider rungs.
+ *
+ * How long one direction keeps the ladder while the other side is waiting is up to a DirectionPolicy. The default
+ *  policy keeps the direction until the ladder is clear, as before.
+ *
+ * A WaitStrategy can let waiting apes spin for a while before they block, which pays off when rungs are only held
+ *  for a moment and there are spare cores.
+ *
+ * With debug on, every move is recorded into a LadderEventLog and printed by a background thread, so apes never
+ *  wait on the console while holding the lock. close() stops that thread.
+ *
+ * The ladder lock is an InstrumentedLock named "Ladder-<n>", so a watchdog.Watchdog can report how long apes wait
+ *  for it and hold it, and catch an ape that stalls while holding it.
+ */
+class Ladder implements SharedLadder {
+
+    private static final AtomicInteger LADDERS = new AtomicInteger();    // for naming each ladder's lock
+
+    // Attributes
+    private final int[] capacity;                                   // How many apes each rung can hold
+    private final int[] rungCapacity;                               // Free capacity of each rung right now
+    private final LadderEventLog events;                            // Debug trace, null when debugging is off
+    private volatile LadderMetrics metrics;                         // Instrumentation, null until enableMetrics()
+
+    private final Object numCheck = new Object();                   // Lock for functions related to apes number checks
+
+    // Re-entrant lock for multi-conditional signaling, instrumented so a Watchdog can see how it is used
+    private final Lock lock = new InstrumentedLock("Ladder-" + LADDERS.incrementAndGet());
+    private final Condition eastQueue = lock.newCondition();        // eastbound apes waiting for the ladder direction
+    private final Condition westQueue = lock.newCondition();        // westbound apes waiting for the ladder direction
+    private final Condition[] rungFree;                             // one queue per rung, signaled when it frees up
+
+    private volatile int eastWaiting;                               // Eastbound apes not yet admitted (written under lock)
+    private volatile int westWaiting;                               // Westbound apes not yet admitted (written under lock)
+
+    private final DirectionPolicy policy;                           // Decides when the current batch closes
+    private int batchAdmitted;                                      // Apes admitted in the current batch (guarded by lock)
+    private long batchStart = System.nanoTime();                    // When the current batch started (guarded by lock)
+
+    private final WaitStrategy waits;                               // How apes wait before blocking on a condition
+    private volatile long changes;                                  // Bumped on every move that may let an ape go
+    private final LongSupplier changeCount = () -> changes;
+
+    private volatile boolean eastBound = true;                      // Ladder direction indicator
+    private volatile long version;                                  // Seqlock for snapshot(): odd while changing
+    private volatile int numApes;                                   // Number of apes on the ladder
+
+    /**
+     * Constructor for object initialization.
+     * @param _nRungs: Integer type. The capacity of the ladder (i.e., the number of rungs).
+     */
+    public Ladder(int _nRungs, boolean debug) {
+        this(_nRungs, debug, DirectionPolicy.untilClear());
+    }
+
+    /**
+     * Constructor for object initialization with a custom direction-switching policy.
+     * @param _nRungs: Integer type. The capacity of the ladder (i.e., the number of rungs).
+     * @param policy: DirectionPolicy type. Decides how long each direction keeps the ladder.
+     */
+    public Ladder(int _nRungs, boolean debug, DirectionPolicy policy) {
+        this(singleCapacity(_nRungs), debug, policy);
+    }
+
+    /**
+     * Constructor for object initialization with rungs that can hold more than one ape each.
+     * @param capacities: integer array type. How many apes each rung can hold at once, all at least 1.
+     * @param policy: DirectionPolicy type. Decides how long each direction keeps the ladder.
+     */
+    public Ladder(int[] capacities, boolean debug, DirectionPolicy policy) {
+        this(capacities, debug, policy, WaitStrategy.blocking());
+    }
+
+    /**
+     * Constructor for object initialization with a custom way for apes to wait.
+     * @param capacities: integer array type. How many apes each rung can hold at once, all at least 1.
+     * @param policy: DirectionPolicy type. Decides how long each direction keeps the ladder.
+     * @param waits: WaitStrategy type. How apes wait before (or instead of) blocking.
+     */
+    public Ladder(int[] capacities, boolean debug, DirectionPolicy policy, WaitStrategy waits) {
+        this.policy = policy;
+        this.waits = waits;
+        capacity = capacities.clone();
+        rungCapacity = capacities.clone();
+        rungFree = new Condition[capacities.length];
+        for (int i=0; i<capacities.length; i++) {
+            if (capacities[i] < 1) {
+                throw new IllegalArgumentException("rung " + i + " needs room for at least one ape");
+            }
+            rungFree[i] = lock.newCondition();
+        }
+        events = debug ? new LadderEventLog(1 << 16, rungCapacity, System.out) : null;
+    }
+
+    /**
+     * Capacity 1 available on each rung.
+     * @param _nRungs: Integer type. The number of rungs.
+     * @return the capacity of every rung.
+     */
+    static int[] singleCapacity(int _nRungs) {
+        int[] capacities = new int[_nRungs];
+        java.util.Arrays.fill(capacities, 1);
+        return capacities;
+    }
+
+    /**
+     * Retrieves the ladder capacity (i.e., the number of rungs).
+     * @return an integer representing the ladder capacity.
+     */
+    public int nRungs() {
+        return rungCapacity.length;
+    }
+
+    /**
+     * Retrieve the current ladder direction.
+     * @return true if the ladder is (or was last) east bound.
+     */
+    public boolean isEastBound() {
+        return eastBound;
+    }
+
+    /**
+     * Retrieve how many apes are waiting to get on the ladder going one way, without taking the lock.
+     * @param goingEast: boolean type. Which side to count.
+     * @return the number of apes waiting on that side.
+     */
+    public int waitingApes(boolean goingEast) {
+        return goingEast ? eastWaiting : westWaiting;
+    }
+
+    /** Stop the debug log's printing thread once it has printed every move so far. Does nothing without debug. */
+    public void close() {
+        if (events != null) {
+            events.close();
+        }
+    }
+
+    /**
+     * Count apes waiting to get on that are not blocked in grabRung(), e.g. in a simulation's own queues.
+     * @param goingEast: boolean type. Which side the apes wait on.
+     * @param apes: integer type. How many apes start waiting, or stop waiting if negative.
+     */
+    @Override
+    public void addWaiting(boolean goingEast, int apes) {
+        lock.lock();
+        try {
+            if (goingEast) {
+                eastWaiting += apes;
+            } else {
+                westWaiting += apes;
+            }
+            changes++;
+            // Apes that stopped waiting may have been what kept the other side off a clear ladder
+            if (apes < 0 && getNumApe() == 0) {
+                handOver();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Turn on the built-in instrumentation (wait-time histograms, rung occupancy, direction flips).
+     * @return the metrics of this ladder; calling again returns the same object.
+     */
+    public LadderMetrics enableMetrics() {
+        lock.lock();
+        try {
+            if (metrics == null) {
+                int[] used = new int[rungCapacity.length];
+                for (int i = 0; i < used.length; i++) {
+                    used[i] = capacity[i] - rungCapacity[i];
+                }
+                metrics = new LadderMetrics(used, lock);
+            }
+            return metrics;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Functions related to add/subtract/retrieve the number of apes on ladder
+
+    /**
+     * Add one ape to ladder.
+     */
+    public void incApe() {
+        synchronized (numCheck){
+            numApes++;
+        }
+    }
+
+    /**
+     * Remove one ape from ladder.
+     */
+    public void decApe() {
+        synchronized (numCheck){
+            numApes--;
+        }
+    }
+
+    /**
+     * Retrieve the number of apes on the ladder now.
+     * @return numApes: Integer type. Represents the number of apes on the ladder now.
+     *                      Should be non-negative.
+     */
+    public int getNumApe() {
+        synchronized (numCheck){
+            return numApes;
+        }
+    }
+
+    /**
+     * Take a consistent picture of the ladder without taking the lock, so observers never hold up the apes. Every
+     *  change to the rungs, the direction or the ape count is bracketed by two bumps of the version (seqlock style):
+     *  the picture is read between two reads of an even, unchanged version, and read again if an ape moved
+     *  meanwhile.
+     * @return the rung occupancy, direction and ape count as they were at one moment.
+     */
+    public LadderSnapshot snapshot() {
+        int[] occupancy = new int[rungCapacity.length];
+        for (int attempt = 0; ; attempt++) {
+            long before = version;
+            if ((before & 1) == 0) {
+                for (int i = 0; i < occupancy.length; i++) {
+                    occupancy[i] = capacity[i] - rungCapacity[i];
+                }
+                boolean east = eastBound;
+                int apes = numApes;
+                // Keep the plain reads above from moving past the second read of the version
+                VarHandle.acquireFence();
+                if (version == before) {
+                    return new LadderSnapshot(before >> 1, east, apes, occupancy);
+                }
+            }
+            if (attempt < 64) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /** Start a change that snapshot() must not see half done. Must be called with the lock held. */
+    private void beginChange() {
+        version++;
+        // Keep the change itself from becoming visible before the odd version
+        VarHandle.storeStoreFence();
+    }
+
+    /** Finish a change started with beginChange(). Must be called with the lock held. */
+    private void endChange() {
+        version++;
+    }
+
+    /**
+     * Concurrent grab rung function with multi-conditional wait.
+     * @param name: string type. Name of the ape.
+     * @param which: integer type. Index of the rung to grab.
+     * @param goingEast: boolean type. True if the ape is going east, and false if the ape is going west.
+     * @return true to indicate that the ape has grabbed the rung.
+     * @throws InterruptedException
+     */
+    public boolean grabRung(String name, int which, boolean goingEast) throws InterruptedException {
+        return grab(name, which, goingEast, false, 0L);
+    }
+
+    /**
+     * Grab rung function that gives up after the timeout. An ape that gives up on its first rung is taken off the
+     *  ladder again, and the apes it was holding up are let through.
+     * @param name: string type. Name of the ape.
+     * @param which: integer type. Index of the rung to grab.
+     * @param goingEast: boolean type. True if the ape is going east, and false if the ape is going west.
+     * @param timeout: long type. Longest time to wait.
+     * @param unit: unit of the timeout.
+     * @return true if the ape has grabbed the rung, false if the time ran out first.
+     * @throws InterruptedException
+     */
+    public boolean tryGrabRung(String name, int which, boolean goingEast, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return grab(name, which, goingEast, true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Shared body of grabRung and the timed tryGrabRung.
+     * @param timed: boolean type. Whether to give up at the deadline.
+     * @param deadline: long type. System.nanoTime() to give up at, if timed.
+     * @return true if the ape has grabbed the rung, false if the deadline passed first.
+     */
+    private boolean grab(String name, int which, boolean goingEast, boolean timed, long deadline)
+            throws InterruptedException {
+
+        LadderMetrics m = metrics;
+        long waitStart = m != null ? System.nanoTime() : 0;
+
+        lock.lock();
+
+        try {
+            // Check if the ape is grabbing the first rung in front of it
+            boolean newApeOnLadder = ((goingEast && which == 0) || (!goingEast && which == nRungs() - 1));
+
+            if (newApeOnLadder) {
+                if (m != null) {
+                    m.crossingStarted(waitStart);
+                }
+                if (!joinLadder(name, goingEast, timed, deadline)) {
+                    if (m != null) {
+                        m.timedOut();
+                    }
+                    return false;
+                }
+                if (m != null) {
+                    long now = System.nanoTime();
+                    m.directionWaited(now - waitStart);
+                    waitStart = now;
+                }
+            }
+
+            boolean gotIt = false;
+            try {
+                // If the rung in front has an ape grabbing it
+                while (rungCapacity[which] < 1) {
+                    // Make the ape wait in this rung's queue until the rung is available again
+                    if (events != null) {
+                        events.record(name, LadderEventLog.WAIT_RUNG, which, 0);
+                    }
+                    if (!awaitTurn(rungFree[which], timed, deadline)) {
+                        if (m != null) {
+                            m.timedOut();
+                        }
+                        return false;
+                    }
+                }
+                gotIt = true;
+            } finally {
+                // The ape never made it onto the ladder, so give up its place in the direction count
+                if (!gotIt && newApeOnLadder) {
+                    leaveLadder();
+                }
+            }
+
+            // Grab rung once it's safe to do so
+            beginChange();
+            rungCapacity[which]--;
+            endChange();
+
+            if (m != null) {
+                long now = System.nanoTime();
+                m.rungWaited(now - waitStart);
+                m.rungChanged(which, 1, now);
+            }
+
+            // Visualize the move
+            if (events != null) {
+                events.record(name, LadderEventLog.GRAB, which, rungCapacity[which]);
+            }
+
+            return true;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking grab rung function: grabs the rung only if the ape could do so right now without waiting.
+     * @param name: string type. Name of the ape.
+     * @param which: integer type. Index of the rung to grab.
+     * @param goingEast: boolean type. True if the ape is going east, and false if the ape is going west.
+     * @return true if the ape has grabbed the rung, false if it would have had to wait.
+     */
+    public boolean tryGrabRung(String name, int which, boolean goingEast) {
+        lock.lock();
+
+        try {
+            // Check if the ape is grabbing the first rung in front of it
+            boolean newApeOnLadder = ((goingEast && which == 0) || (!goingEast && which == nRungs() - 1));
+
+            if (newApeOnLadder) {
+                // Let the policy see this ape as waiting while it decides
+                if (goingEast) {
+                    eastWaiting++;
+                } else {
+                    westWaiting++;
+                }
+                boolean allowed = mayJoin(goingEast);
+                if (goingEast) {
+                    eastWaiting--;
+                } else {
+                    westWaiting--;
+                }
+                if (!allowed || rungCapacity[which] < 1) {
+                    return false;
+                }
+                admit(name, goingEast);
+            } else if (rungCapacity[which] < 1) {
+                return false;
+            }
+
+            // Grab rung once it's safe to do so
+            beginChange();
+            rungCapacity[which]--;
+            endChange();
+
+            LadderMetrics m = metrics;
+            if (m != null) {
+                long now = System.nanoTime();
+                if (newApeOnLadder) {
+                    m.crossingStarted(now);
+                }
+                m.rungChanged(which, 1, now);
+            }
+
+            // Visualize the move
+            if (events != null) {
+                events.record(name, LadderEventLog.GRAB, which, rungCapacity[which]);
+            }
+
+            return true;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Concurrent release rung function with multi-conditional notify.
+     * @param which: integer type. Index of the rung to release.
+     */
+    public void releaseRung(String name, int which) {
+        lock.lock();
+
+        try {
+            // First, release the rung
+            beginChange();
+            rungCapacity[which]++;
+            endChange();
+
+            LadderMetrics m = metrics;
+            long now = m != null ? System.nanoTime() : 0;
+            if (m != null) {
+                m.rungChanged(which, -1, now);
+            }
+
+            if (events != null) {
+                events.record(name, LadderEventLog.RELEASE, which, rungCapacity[which]);
+            }
+
+            // Decrease ape by 1 if ape reaches the other side
+            boolean reachesTheOtherSide = ((eastBound && (which + 1) == nRungs()) || (!eastBound && which == 0));
+            if (reachesTheOtherSide) {
+                if (events != null) {
+                    events.record(name, LadderEventLog.FINISH, which, (getNumApe() - 1) * 2 + (eastBound ? 1 : 0));
+                }
+                if (m != null) {
+                    m.crossingFinished(now);
+                }
+                leaveLadder();
+            }
+
+            // Notify only the next ape waiting to grab the released rung
+            changes++;
+            rungFree[which].signal();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move one rung in a single step: wait for the next rung, take it and release the one the ape holds, all under
+     *  one lock, and wake only the ape behind.
+     * @param name: string type. Name of the ape.
+     * @param from: integer type. Index of the rung the ape holds.
+     * @param to: integer type. Index of the rung to move to.
+     * @return true to indicate that the ape has moved.
+     * @throws InterruptedException
+     */
+    @Override
+    public boolean advance(String name, int from, int to) throws InterruptedException {
+        return advance(name, from, to, false, 0L);
+    }
+
+    /**
+     * Timed version of advance(). An ape that runs out of time still holds its rung.
+     * @param name: string type. Name of the ape.
+     * @param from: integer type. Index of the rung the ape holds.
+     * @param to: integer type. Index of the rung to move to.
+     * @param timeout: long type. Longest time to wait.
+     * @param unit: unit of the timeout.
+     * @return true if the ape has moved, false if the time ran out first.
+     * @throws InterruptedException
+     */
+    @Override
+    public boolean tryAdvance(String name, int from, int to, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return advance(name, from, to, true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Shared body of advance and tryAdvance.
+     * @param timed: boolean type. Whether to give up at the deadline.
+     * @param deadline: long type. System.nanoTime() to give up at, if timed.
+     * @return true if the ape has moved, false if the deadline passed first.
+     */
+    private boolean advance(String name, int from, int to, boolean timed, long deadline)
+            throws InterruptedException {
+
+        LadderMetrics m = metrics;
+        long waitStart = m != null ? System.nanoTime() : 0;
+
+        lock.lock();
+
+        try {
+            // If the rung in front has an ape grabbing it
+            while (rungCapacity[to] < 1) {
+                if (events != null) {
+                    events.record(name, LadderEventLog.WAIT_RUNG, to, 0);
+                }
+                if (!awaitTurn(rungFree[to], timed, deadline)) {
+                    if (m != null) {
+                        m.timedOut();
+                    }
+                    return false;
+                }
+            }
+
+            // Hand over hand: take the next rung, then let go of the old one
+            beginChange();
+            rungCapacity[to]--;
+            rungCapacity[from]++;
+            endChange();
+
+            if (m != null) {
+                long now = System.nanoTime();
+                m.rungWaited(now - waitStart);
+                m.rungChanged(to, 1, now);
+                m.rungChanged(from, -1, now);
+            }
+
+            if (events != null) {
+                events.record(name, LadderEventLog.GRAB, to, rungCapacity[to]);
+                events.record(name, LadderEventLog.RELEASE, from, rungCapacity[from]);
+            }
+
+            // Only the ape waiting for the rung we left can move because of this
+            changes++;
+            rungFree[from].signal();
+
+            return true;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The ladder is one lane, so the direction makes no difference: same as releaseRung(name, which). */
+    @Override
+    public void releaseRung(String name, int which, boolean goingEast) {
+        releaseRung(name, which);
+    }
+
+    /**
+     * Release the rung the ape holds and take the ape off the ladder without it reaching the other side.
+     * @param which: integer type. Index of the rung the ape holds.
+     */
+    public void fallOff(String name, int which) {
+        lock.lock();
+
+        try {
+            beginChange();
+            rungCapacity[which]++;
+            endChange();
+
+            LadderMetrics m = metrics;
+            if (m != null) {
+                m.rungChanged(which, -1, System.nanoTime());
+                m.fellOff();
+            }
+
+            if (events != null) {
+                events.record(name, LadderEventLog.RELEASE, which, rungCapacity[which]);
+                events.record(name, LadderEventLog.FALL_OFF, which, (getNumApe() - 1) * 2 + (eastBound ? 1 : 0));
+            }
+
+            leaveLadder();
+            changes++;
+            rungFree[which].signal();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The ladder is one lane, so the direction makes no difference: same as fallOff(name, which). */
+    @Override
+    public void fallOff(String name, int which, boolean goingEast) {
+        fallOff(name, which);
+    }
+
+    /**
+     * Wait in the ape's direction queue until the direction policy lets the ape on, then count the ape in.
+     *  Must be called with the lock held.
+     * @param name: string type. Name of the ape.
+     * @param goingEast: boolean type. Direction of the ape.
+     * @param timed: boolean type. Whether to give up at the deadline.
+     * @param deadline: long type. System.nanoTime() to give up at, if timed.
+     * @return true if the ape is on the ladder, false if the deadline passed first.
+     * @throws InterruptedException if the ape is interrupted while waiting.
+     */
+    private boolean joinLadder(String name, boolean goingEast, boolean timed, long deadline)
+            throws InterruptedException {
+
+        // The ape counts as waiting from the moment it arrives, so the policy sees the real queue lengths
+        if (goingEast) {
+            eastWaiting++;
+        } else {
+            westWaiting++;
+        }
+        boolean joined = false;
+        try {
+            // If the ladder has another ape coming from the opposite direction, or our batch is over
+            while (!mayJoin(goingEast)) {
+                // An empty ladder that we may not take belongs to the other side, so make sure they know
+                if (getNumApe() == 0 && (goingEast ? westWaiting > 0 : eastWaiting > 0)) {
+                    (goingEast ? westQueue : eastQueue).signal();
+                }
+                // Make the ape wait until it is our turn
+                if (events != null) {
+                    events.record(name, LadderEventLog.WAIT_DIRECTION, -1, 0);
+                }
+                if (!awaitTurn(goingEast ? eastQueue : westQueue, timed, deadline)) {
+                    return false;
+                }
+            }
+            joined = true;
+        } finally {
+            if (goingEast) {
+                eastWaiting--;
+            } else {
+                westWaiting--;
+            }
+            // An ape that gives up may have been what kept the other side off a clear ladder
+            if (!joined) {
+                changes++;
+                if (getNumApe() == 0) {
+                    handOver();
+                }
+            }
+        }
+
+        admit(name, goingEast);
+        return true;
+    }
+
+    /**
+     * Count an ape that is allowed on the ladder in. Must be called with the lock held.
+     * @param name: string type. Name of the ape.
+     * @param goingEast: boolean type. Direction of the ape.
+     */
+    private void admit(String name, boolean goingEast) {
+
+        // If this is the first Ape on ladder, change ladder direction to wherever this ape is going
+        if (getNumApe() == 0) {
+            // Going the other way from the last batch starts a new batch
+            if (goingEast != eastBound) {
+                beginChange();
+                eastBound = goingEast;
+                endChange();
+                if (metrics != null) {
+                    metrics.directionFlipped();
+                }
+                batchAdmitted = 0;
+                batchStart = System.nanoTime();
+            }
+            if (events != null) {
+                events.record(name, LadderEventLog.NEW_DIRECTION, -1, goingEast ? 1 : 0);
+            }
+        }
+
+        // Increase the number of apes on the ladder by 1. From here on the ape holds the direction, even while it
+        //  waits for the first rung behind another ape going the same way.
+        batchAdmitted++;
+        beginChange();
+        incApe();
+        endChange();
+        changes++;
+
+        // If the batch is still open, the next ape on our side may join as well
+        if ((goingEast ? eastWaiting > 0 : westWaiting > 0) && mayJoin(goingEast)) {
+            (goingEast ? eastQueue : westQueue).signal();
+        }
+    }
+
+    /**
+     * Check whether an ape going the given way may get on the ladder now. Must be called with the lock held.
+     * @param goingEast: boolean type. Direction of the ape.
+     * @return true if the ape may be admitted.
+     */
+    private boolean mayJoin(boolean goingEast) {
+        int sameWaiting = goingEast ? eastWaiting : westWaiting;
+        int otherWaiting = goingEast ? westWaiting : eastWaiting;
+
+        if (goingEast == eastBound) {
+            // Joining the current batch: always fine unless the other side is waiting and the batch is over
+            return otherWaiting == 0 || batchOpen(sameWaiting, otherWaiting);
+        }
+        // Starting a new batch: only on a clear ladder, and only once the current batch is over
+        return getNumApe() == 0 && (otherWaiting == 0 || !batchOpen(otherWaiting, sameWaiting));
+    }
+
+    /**
+     * Ask the policy whether the current batch may admit more apes. Must be called with the lock held.
+     * @param waitingSame: integer type. Apes waiting in the current direction.
+     * @param waitingOther: integer type. Apes waiting in the other direction.
+     * @return true if the batch is still open.
+     */
+    private boolean batchOpen(int waitingSame, int waitingOther) {
+        return policy.continueBatch(batchAdmitted, System.nanoTime() - batchStart, getNumApe(), waitingSame,
+                waitingOther);
+    }
+
+    /**
+     * Take one ape off the ladder count and, once the ladder is clear, hand it to one waiting ape.
+     *  Must be called with the lock held.
+     */
+    private void leaveLadder() {
+        beginChange();
+        decApe();
+        endChange();
+        changes++;
+
+        // Once the ladder is clear, allow apes from the other side to cross
+        if (getNumApe() == 0) {
+            if (events != null) {
+                events.record(null, LadderEventLog.CLEAR, -1, 0);
+            }
+            handOver();
+        }
+    }
+
+    /**
+     * Wake one ape to take the clear ladder, preferring the opposite side if the policy lets it go.
+     *  Must be called with the lock held.
+     */
+    private void handOver() {
+        if ((eastBound ? westWaiting > 0 : eastWaiting > 0) && mayJoin(!eastBound)) {
+            (eastBound ? westQueue : eastQueue).signal();
+        } else if (eastBound ? eastWaiting > 0 : westWaiting > 0) {
+            (eastBound ? eastQueue : westQueue).signal();
+        }
+    }
+
+    /**
+     * Await on the given queue, after letting the wait strategy watch the ladder for a while if it spins. If the ape
+     *  gives up, because it is interrupted or out of time, it may already have been picked by a signal, so pass that
+     *  signal on to the next ape in the same queue.
+     * @param queue: the condition to wait on. The lock must be held.
+     * @param timed: boolean type. Whether to give up at the deadline.
+     * @param deadline: long type. System.nanoTime() to give up at, if timed.
+     * @return true once woken up, false if the deadline has passed.
+     * @throws InterruptedException if the ape is interrupted while waiting.
+     */
+    private boolean awaitTurn(Condition queue, boolean timed, long deadline) throws InterruptedException {
+        if (waits.spins()) {
+            long seen = changes;
+            lock.unlock();
+            boolean changed;
+            try {
+                changed = waits.spinUntilChanged(changeCount, seen, timed, deadline);
+            } finally {
+                lock.lock();
+            }
+            // Anything that could let the ape go bumps the counter under the lock, so if it hasn't moved by now,
+            //  blocking can't miss a signal
+            if (changed || changes != seen) {
+                return true;
+            }
+            if (timed && System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+        }
+        try {
+            if (!timed) {
+                queue.await();
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0 && queue.awaitNanos(remaining) > 0) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            queue.signal();
+            throw e;
+        }
+        queue.signal();
+        return false;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+Off-critical-path event log for the lock-based Ladder.
+
+With debugging on, the ladder used to call System.out.println (and Arrays.toString on the rungs) while holding its
+lock, so every ape queued up behind the console. Now an ape only writes a few numbers into a pre-allocated ring
+buffer: the event kind, the rung, one argument and System.nanoTime(), plus a reference to the ape's name. A
+background drainer thread turns the events into the familiar text and prints them.
+
+Recording never blocks and never allocates. If the drainer falls a whole ring behind, new events are dropped and
+counted, and the drainer reports how many were lost. Each rung event carries the rung's free capacity after the
+move, so the printed ladder picture heals itself after a drop.
+
+close() stops the drainer once it has printed everything recorded so far. A log that is never closed is flushed by a
+shutdown hook when the program ends.
+ */
+
+package jungle;
+
+// Java Imports
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+
+/** Lock-free ring buffer of ladder events with a background drainer. */
+class LadderEventLog {
+
+    // Event kinds
+    static final int WAIT_DIRECTION = 0;    // arg unused
+    static final int WAIT_RUNG = 1;         // arg unused
+    static final int NEW_DIRECTION = 2;     // arg 1 = east, 0 = west
+    static final int GRAB = 3;              // arg = free capacity of the rung afterwards
+    static final int RELEASE = 4;           // arg = free capacity of the rung afterwards
+    static final int FINISH = 5;            // arg = apes left on the ladder * 2 + (1 if east)
+    static final int CLEAR = 6;             // arg unused
+    static final int FALL_OFF = 7;          // arg = apes left on the ladder * 2 + (1 if east)
+
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    // Ring buffer, one slot per event
+    private final int mask;
+    private final long[] times;
+    private final int[] kinds;
+    private final int[] rungs;
+    private final int[] args;
+    private final String[] names;
+    private final AtomicLongArray published;    // sequence number last written into each slot, plus one
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long drained;
+    private volatile boolean closed;
+
+    // Drainer state (only touched by the drainer thread, or by close() once it has stopped)
+    private final Thread drainer;
+    private final Thread flushOnExit;
+    private final PrintStream out;
+    private final int[] picture;
+    private final long startNanos = System.nanoTime();
+    private long droppedReported;
+
+    /**
+     * Constructor for object initialization. Starts the drainer thread.
+     * @param capacity: integer type. Number of events the ring can hold, rounded up to a power of two.
+     * @param rungCapacity: integer array type. Initial free capacity of every rung, for the printed ladder picture.
+     * @param out: where the drainer prints the events.
+     */
+    public LadderEventLog(int capacity, int[] rungCapacity, PrintStream out) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        times = new long[size];
+        kinds = new int[size];
+        rungs = new int[size];
+        args = new int[size];
+        names = new String[size];
+        published = new AtomicLongArray(size);
+        this.out = out;
+        this.picture = rungCapacity.clone();
+
+        drainer = new Thread(this::drainForever, "ladder-event-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+        // Don't lose the tail of the log when the program ends
+        flushOnExit = new Thread(this::drainAvailable);
+        Runtime.getRuntime().addShutdownHook(flushOnExit);
+    }
+
+    /** Print whatever is still in the ring and stop the drainer thread. Events recorded afterwards are not printed. */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainAvailable();
+        try {
+            Runtime.getRuntime().removeShutdownHook(flushOnExit);
+        } catch (IllegalStateException e) {
+            // Closed while the program is ending: the hook is running anyway
+        }
+    }
+
+    /**
+     * Record one event. Never blocks; drops the event if the drainer is a whole ring behind.
+     * @param name: string type. Name of the ape.
+     * @param kind: integer type. One of the event kinds above.
+     * @param rung: integer type. The rung involved, if any.
+     * @param arg: integer type. Extra argument, see the event kinds.
+     */
+    public void record(String name, int kind, int rung, int arg) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - drained > mask) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        times[slot] = System.nanoTime();
+        kinds[slot] = kind;
+        rungs[slot] = rung;
+        args[slot] = arg;
+        names[slot] = name;
+        // Publishing the slot makes the plain writes above visible to the drainer
+        published.set(slot, sequence + 1);
+    }
+
+    /** Drainer loop: print whatever is ready, then nap briefly, until close(). */
+    private void drainForever() {
+        while (!closed) {
+            if (!drainAvailable()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Print every event that has been published so far, in order.
+     * @return true if anything was printed.
+     */
+    private synchronized boolean drainAvailable() {
+        boolean any = false;
+        long next = drained;
+        while (true) {
+            int slot = (int) next & mask;
+            if (published.get(slot) != next + 1) {
+                break;
+            }
+            print(names[slot], kinds[slot], rungs[slot], args[slot], times[slot]);
+            names[slot] = null;
+            drained = ++next;
+            any = true;
+        }
+        long lost = dropped.get();
+        if (lost != droppedReported) {
+            out.println("(" + (lost - droppedReported) + " ladder events dropped, the log could not keep up)\n");
+            droppedReported = lost;
+        }
+        return any;
+    }
+
+    /** Format one event like the old inline debug prints. */
+    private void print(String name, int kind, int rung, int arg, long time) {
+        String stamp = String.format("[%10.3f ms] ", (time - startNanos) / 1e6);
+        switch (kind) {
+            case WAIT_DIRECTION:
+                out.println(stamp + "Ape " + name + " is waiting on the opposite side... \n");
+                break;
+            case WAIT_RUNG:
+                out.println(stamp + "Ape " + name + " is waiting for the ape in front to leave... \n");
+                break;
+            case NEW_DIRECTION:
+                out.print("\n" + stamp + "Ape " + name + " got to the ladder first! ");
+                out.println("The ladder is now " + (arg == 1 ? "east" : "west") + " bound only. \n");
+                break;
+            case GRAB:
+                picture[rung] = arg;
+                out.println(stamp + "Ape " + name + " got rung " + rung);
+                out.println("The ladder now looks like: " + Arrays.toString(picture));
+                break;
+            case RELEASE:
+                picture[rung] = arg;
+                out.println(stamp + "... and released rung " + rung);
+                out.println("The ladder now looks like: " + Arrays.toString(picture) + "\n");
+                break;
+            case FINISH:
+                out.println(stamp + "Ape " + name + " finished going " + ((arg & 1) == 1 ? "east." : "west."));
+                out.println((arg >> 1) + " apes left on the ladder. \n");
+                break;
+            case FALL_OFF:
+                out.println(stamp + "Ape " + name + ": AAaaaaaah! fell off rung " + rung + " into the river.");
+                out.println((arg >> 1) + " apes left on the ladder. \n");
+                break;
+            case CLEAR:
+                out.println(stamp + "Ladder is now clear. \n");
+                break;
+            default:
+                out.println(stamp + "Unknown ladder event " + kind);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+Built-in instrumentation for the lock-based Ladder.
+
+Usage:
+    LadderMetrics metrics = ladder.enableMetrics();
+    metrics.register("main");                               // shows up in JConsole as jungle:type=Ladder,name=main
+    metrics.startPeriodicDump(System.out, 10, TimeUnit.SECONDS);
+
+    The ladder records how long apes wait for the direction, how long they wait for the next rung, and how long the
+    whole crossing takes (from asking for the first rung to letting go of the last), plus how busy every rung is and
+    how often the ladder changes direction.
+
+    Latencies go into a small set of striped LatencyHistograms, picked by thread, so apes hardly ever touch the same
+    histogram at once and recording costs an uncontended monitor and a few array writes. Rung occupancy and direction
+    flips are updated by the ladder while it already holds its own lock, so they cost nothing extra to keep
+    consistent. Reading the occupancy takes that lock too, once per read, so every rung is seen at the same instant.
+
+    Crossing latency relies on the same thread asking for the first rung and releasing the last one, which is how
+    Apes work.
+ */
+
+package jungle;
+
+// Java Imports
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import metrics.LatencyHistogram;
+
+
+/** Wait-time histograms, rung occupancy and direction flips for one Ladder. */
+class LadderMetrics implements LadderMetricsMBean {
+
+    /** One stripe of latency histograms. Guarded by its own monitor. */
+    private static final class Stripe {
+        final LatencyHistogram directionWait = new LatencyHistogram();
+        final LatencyHistogram rungWait = new LatencyHistogram();
+        final LatencyHistogram crossing = new LatencyHistogram();
+    }
+
+    private static final int DIRECTION_WAIT = 0;
+    private static final int RUNG_WAIT = 1;
+    private static final int CROSSING = 2;
+
+    // Latency histograms, striped by thread
+    private final Stripe[] stripes;
+    private final ThreadLocal<long[]> crossingStart = ThreadLocal.withInitial(() -> new long[1]);
+
+    // Occupancy and flips, updated by the ladder under its lock
+    private final int[] used;
+    private final long[] lastChange;
+    private final long[] occupiedNanos;
+    private volatile long since = System.nanoTime();
+    private volatile long directionFlips;
+    private volatile long timeouts;
+    private volatile long fallOffs;
+
+    private final Lock ladderLock;
+    private ScheduledExecutorService dumper;
+
+    /**
+     * Constructor for object initialization. Called by Ladder.enableMetrics() with the ladder lock held.
+     * @param used: integer array type. How many apes are on each rung right now.
+     * @param ladderLock: the ladder's lock, which guards the occupancy bookkeeping.
+     */
+    LadderMetrics(int[] used, Lock ladderLock) {
+        this.ladderLock = ladderLock;
+        this.used = used.clone();
+        this.lastChange = new long[used.length];
+        this.occupiedNanos = new long[used.length];
+        java.util.Arrays.fill(lastChange, since);
+
+        int n = Integer.highestOneBit(Math.max(1, 2 * Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Recording, called by the ladder
+
+    /** The calling ape is asking for its first rung: start its crossing clock. */
+    void crossingStarted(long now) {
+        crossingStart.get()[0] = now;
+    }
+
+    /** The calling ape has let go of its last rung. */
+    void crossingFinished(long now) {
+        record(CROSSING, now - crossingStart.get()[0]);
+    }
+
+    /** The calling ape waited this long for the ladder direction. */
+    void directionWaited(long nanos) {
+        record(DIRECTION_WAIT, nanos);
+    }
+
+    /** The calling ape waited this long for its rung. */
+    void rungWaited(long nanos) {
+        record(RUNG_WAIT, nanos);
+    }
+
+    /** A rung gained (+1) or lost (-1) an ape. Must be called under the ladder lock. */
+    void rungChanged(int rung, int delta, long now) {
+        occupiedNanos[rung] += used[rung] * (now - lastChange[rung]);
+        lastChange[rung] = now;
+        used[rung] += delta;
+    }
+
+    /** The ladder changed direction. Must be called under the ladder lock. */
+    void directionFlipped() {
+        directionFlips++;
+    }
+
+    /** A timed grab ran out of time. Must be called under the ladder lock. */
+    void timedOut() {
+        timeouts++;
+    }
+
+    /** An ape fell off the ladder before reaching the other side. Must be called under the ladder lock. */
+    void fellOff() {
+        fallOffs++;
+    }
+
+    private void record(int which, long nanos) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        synchronized (stripe) {
+            (which == DIRECTION_WAIT ? stripe.directionWait : which == RUNG_WAIT ? stripe.rungWait : stripe.crossing)
+                    .record(nanos);
+        }
+    }
+
+    // Reading
+
+    /** Merge one histogram across all stripes. */
+    private LatencyHistogram merged(int which) {
+        LatencyHistogram total = new LatencyHistogram();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                total.merge(which == DIRECTION_WAIT ? stripe.directionWait
+                        : which == RUNG_WAIT ? stripe.rungWait : stripe.crossing);
+            }
+        }
+        return total;
+    }
+
+    private static long[] percentiles(LatencyHistogram h) {
+        return new long[] {h.percentile(50), h.percentile(99), h.percentile(99.9), h.max()};
+    }
+
+    @Override
+    public long[] getDirectionWaitNanos() {
+        return percentiles(merged(DIRECTION_WAIT));
+    }
+
+    @Override
+    public long[] getRungWaitNanos() {
+        return percentiles(merged(RUNG_WAIT));
+    }
+
+    @Override
+    public long[] getCrossingNanos() {
+        return percentiles(merged(CROSSING));
+    }
+
+    @Override
+    public double[] getRungOccupancy() {
+        double[] occupancy = new double[used.length];
+        // The occupancy bookkeeping belongs to the ladder lock, like in reset()
+        ladderLock.lock();
+        try {
+            long now = System.nanoTime();
+            long elapsed = Math.max(1, now - since);
+            for (int i = 0; i < used.length; i++) {
+                // Include the time since the last change, which has not been added up yet
+                occupancy[i] = (occupiedNanos[i] + used[i] * (now - lastChange[i])) / (double) elapsed;
+            }
+        } finally {
+            ladderLock.unlock();
+        }
+        return occupancy;
+    }
+
+    @Override
+    public long getDirectionFlips() {
+        return directionFlips;
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    @Override
+    public long getFallOffs() {
+        return fallOffs;
+    }
+
+    @Override
+    public long getCrossings() {
+        return merged(CROSSING).count();
+    }
+
+    @Override
+    public String dump() {
+        LatencyHistogram crossing = merged(CROSSING);
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Ladder metrics over the last %.1f s: %d crossings, %d direction flips, "
+                + "%d timeouts, %d fell off%n", (System.nanoTime() - since) / 1e9, crossing.count(), directionFlips,
+                timeouts, fallOffs));
+        out.append("  direction wait: ").append(merged(DIRECTION_WAIT).summaryMillis()).append('\n');
+        out.append("  rung wait:      ").append(merged(RUNG_WAIT).summaryMillis()).append('\n');
+        out.append("  crossing:       ").append(crossing.summaryMillis()).append('\n');
+        out.append("  rung occupancy:");
+        for (double o : getRungOccupancy()) {
+            out.append(String.format(" %.2f", o));
+        }
+        return out.append('\n').toString();
+    }
+
+    @Override
+    public void reset() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.directionWait.reset();
+                stripe.rungWait.reset();
+                stripe.crossing.reset();
+            }
+        }
+        // Occupancy, flips and the give-up counters belong to the ladder lock
+        ladderLock.lock();
+        try {
+            long now = System.nanoTime();
+            java.util.Arrays.fill(occupiedNanos, 0);
+            java.util.Arrays.fill(lastChange, now);
+            since = now;
+            directionFlips = 0;
+            timeouts = 0;
+            fallOffs = 0;
+        } finally {
+            ladderLock.unlock();
+        }
+    }
+
+    // Publishing
+
+    /**
+     * Register these metrics with the platform MBean server as jungle:type=Ladder,name=(name).
+     * @param name: string type. Name to tell this ladder apart from others.
+     * @throws JMException if the name is taken or invalid.
+     */
+    public void register(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this, LadderMetricsMBean.class),
+                new ObjectName("jungle:type=Ladder,name=" + ObjectName.quote(name)));
+    }
+
+    /**
+     * Print dump() every period on a background daemon thread.
+     * @param out: where to print.
+     * @param period: long type. Time between dumps.
+     * @param unit: unit of the period.
+     */
+    public synchronized void startPeriodicDump(PrintStream out, long period, TimeUnit unit) {
+        if (dumper == null) {
+            dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ladder-metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        dumper.scheduleAtFixedRate(() -> out.print(dump()), period, period, unit);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+JMX management interface for LadderMetrics.
+ */
+
+package jungle;
+
+
+/**
+ * What a ladder exposes over JMX. Latency getters return {p50, p99, p999, max} in nanoseconds. Every value is read
+ *  without stopping the apes, so it may lag the ladder by a few moves.
+ */
+public interface LadderMetricsMBean {
+
+    /** @return time apes waited for the ladder direction (p50, p99, p999, max in ns). */
+    long[] getDirectionWaitNanos();
+
+    /** @return time apes waited for the next rung to free up (p50, p99, p999, max in ns). */
+    long[] getRungWaitNanos();
+
+    /** @return time from asking for the first rung to releasing the last one (p50, p99, p999, max in ns). */
+    long[] getCrossingNanos();
+
+    /** @return for each rung, the average number of apes on it since the metrics were (re)started. */
+    double[] getRungOccupancy();
+
+    /** @return how many times the ladder changed direction. */
+    long getDirectionFlips();
+
+    /** @return how many timed grabs ran out of time (the ape backed off or fell off afterwards). */
+    long getTimeouts();
+
+    /** @return how many apes fell off the ladder without reaching the other side. */
+    long getFallOffs();
+
+    /** @return how many apes finished crossing. */
+    long getCrossings();
+
+    /** @return the text report also used by the periodic dump. */
+    String dump();
+
+    /** Start every measurement over. */
+    void reset();
+}
@@ -0,0 +1,139 @@
+/*
+Multi-ladder jungle for the "Apes and Ladder" lab.
+
+One ladder can only carry so many apes per second, however it is implemented. A LadderNetwork holds several ladders
+(possibly of different lengths) across the same river, and routes every arriving ape to the ladder where it should
+get across soonest, judging from each ladder's live state: its direction, the apes on it, and the apes already
+queued on either side.
+
+Usage:
+    java jungle.LadderNetwork [apes] [seconds per run] [rung delay in microseconds]
+
+    Sends the same crowd of apes across networks of 1, 2 and 4 ladders, on the LadderBenchmark harness, and prints
+    the crossings per second and how the router spread the apes over the ladders.
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/** A set of ladders plus a contention-aware router. */
+class LadderNetwork {
+
+    // Attributes
+    private final List<SharedLadder> ladders;
+    private final AtomicLongArray routed;
+
+    /**
+     * Constructor for object initialization.
+     * @param ladders: the ladders in the network, at least one.
+     */
+    public LadderNetwork(SharedLadder... ladders) {
+        if (ladders.length == 0) {
+            throw new IllegalArgumentException("a ladder network needs at least one ladder");
+        }
+        this.ladders = List.of(ladders);
+        this.routed = new AtomicLongArray(ladders.length);
+    }
+
+    /** @return the ladders in the network, in the order they were given. */
+    public List<SharedLadder> ladders() {
+        return ladders;
+    }
+
+    /**
+     * Pick the ladder with the shortest expected time to get across in the given direction.
+     * @param goingEast: boolean type. Direction of the arriving ape.
+     * @return the ladder the ape should take.
+     */
+    public SharedLadder route(boolean goingEast) {
+        // Start the scan at a random ladder so that ties don't all go to the first one
+        int n = ladders.size();
+        int offset = ThreadLocalRandom.current().nextInt(n);
+        int best = offset;
+        long bestCost = Long.MAX_VALUE;
+        for (int k = 0; k < n; k++) {
+            int i = (offset + k) % n;
+            long cost = expectedSteps(ladders.get(i), goingEast);
+            if (cost < bestCost) {
+                best = i;
+                bestCost = cost;
+            }
+        }
+        routed.incrementAndGet(best);
+        return ladders.get(best);
+    }
+
+    /**
+     * Number of apes the router has sent to each ladder so far.
+     * @return one count per ladder, in order.
+     */
+    public long[] routedCounts() {
+        long[] counts = new long[ladders.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = routed.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Estimate, in rung-holding times, how long an ape arriving now would take to get across a ladder.
+     *
+     * If the ladder is empty or already going the ape's way, the ape waits roughly one step for each ape queued
+     *  ahead of it on its side, including apes that are already counted on the ladder but still wait for the first
+     *  rung because the ladder is full. Otherwise it first has to wait for the ladder to drain, which takes about one
+     *  step per ape on the ladder plus the length of the ladder, and the apes queued on the other side may still get
+     *  on before it. On top of the wait, the ape needs one step per rung to climb across.
+     *
+     * A two-lane ladder is judged by the lane the ape would climb, which never has to change direction.
+     *
+     * @param ladder: the ladder to judge.
+     * @param goingEast: boolean type. Direction of the ape.
+     * @return expected number of steps.
+     */
+    static long expectedSteps(SharedLadder ladder, boolean goingEast) {
+        ladder = ladder.lane(goingEast);
+        int rungs = ladder.nRungs();
+        int onLadder = ladder.getNumApe();
+        int queuedSame = ladder.waitingApes(goingEast);
+
+        long wait;
+        if (onLadder == 0 || ladder.isEastBound() == goingEast) {
+            wait = queuedSame + Math.max(0, onLadder - (rungs - 1));
+        } else {
+            wait = (long) onLadder + rungs + ladder.waitingApes(!goingEast) + queuedSame;
+        }
+        return wait + rungs;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int apes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 3.0;
+        long delayNanos = (args.length > 2 ? Long.parseLong(args[2]) : 200) * 1000L;
+
+        System.out.println(apes + " apes, " + seconds + " s per network \n");
+        for (int size : new int[] {1, 2, 4}) {
+            // Mix of ladder lengths: 4, 6, 4, 6, ...
+            SharedLadder[] ladders = new SharedLadder[size];
+            for (int i = 0; i < size; i++) {
+                ladders[i] = new Ladder(i % 2 == 0 ? 4 : 6, false);
+            }
+            LadderNetwork network = new LadderNetwork(ladders);
+
+            AtomicLong crossings = new AtomicLong();
+            LadderBenchmark.crowd(apes, 0.5, System.nanoTime() + (long) (seconds * 1e9), (ape, name, goingEast) -> {
+                LadderBenchmark.cross(network.route(goingEast), name, goingEast, delayNanos);
+                crossings.incrementAndGet();
+                return true;
+            });
+            System.out.printf("%d ladder(s): %8.1f crossings/s   routed %s%n", size, crossings.get() / seconds,
+                    Arrays.toString(network.routedCounts()));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+Point-in-time picture of a ladder, for dashboards and other observers.
+
+Usage:
+    LadderSnapshot now = ladder.snapshot();         // never blocks the apes
+    if (now.version != last.version) redraw(now);
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.Arrays;
+
+
+/** Rung occupancy, direction and ape count of a ladder, all as they were at the same moment. */
+final class LadderSnapshot {
+
+    // Attributes
+    final long version;         // grows with every change to the ladder (equal = nothing moved), -1 if not kept
+    final boolean eastBound;    // direction of the ladder (or of its last batch, if it is empty)
+    final int apesOnLadder;     // apes admitted onto the ladder, including those still waiting for their first rung
+    private final int[] occupancy;
+
+    /**
+     * Constructor for object initialization.
+     * @param version: long type. Version of the ladder this picture was taken at, -1 if the ladder keeps none.
+     * @param eastBound: boolean type. Ladder direction.
+     * @param apesOnLadder: integer type. Number of apes on the ladder.
+     * @param occupancy: integer array type. Apes on each rung; kept, not copied.
+     */
+    LadderSnapshot(long version, boolean eastBound, int apesOnLadder, int[] occupancy) {
+        this.version = version;
+        this.eastBound = eastBound;
+        this.apesOnLadder = apesOnLadder;
+        this.occupancy = occupancy;
+    }
+
+    /**
+     * Retrieve how many apes were on one rung.
+     * @param which: integer type. Index of the rung.
+     * @return the number of apes holding that rung.
+     */
+    public int occupancy(int which) {
+        return occupancy[which];
+    }
+
+    /** @return the number of rungs. */
+    public int nRungs() {
+        return occupancy.length;
+    }
+
+    @Override
+    public String toString() {
+        return (eastBound ? "east" : "west") + " bound, " + apesOnLadder + " apes on the ladder, rungs "
+                + Arrays.toString(occupancy) + " (version " + version + ")";
+    }
+}
@@ -0,0 +1,357 @@
+/*
+Lock-free "Apes and Ladder" implementation.
+
+The lock-based Ladder funnels every grab and release through one ReentrantLock, so a long ladder is no faster than a
+short one. Here each rung's free capacity lives in its own slot of an AtomicIntegerArray, and the ladder direction plus
+the number of apes on the ladder are packed into a single AtomicLong that is updated with CAS. Apes moving between
+rungs in the middle of the ladder only ever touch their own two rung slots, so they never contend with each other;
+only apes getting on or off the ladder touch the shared state word.
+
+Every slot and the state word also carry a stamp that each change bumps, so snapshot() can tell "nothing changed"
+from "something changed and changed back" without a shared version counter that every move would have to touch.
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Lock-free ladder with the same rules as Ladder: whichever ape gets on an empty ladder first decides the direction
+ *  until the ladder is clear again, and an ape only grabs a rung once the rung has free capacity.
+ */
+class LockFreeLadder implements SharedLadder {
+
+    // Layout of the state word: bits 33-63 are a stamp bumped by every change, bit 32 is the direction (set = east),
+    //  the low 32 bits are the number of apes
+    private static final long STATE_STAMP = 1L << 33;
+    private static final long EAST_BIT = 1L << 32;
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    // Layout of a rung slot: the high 32 bits are a stamp bumped by every change, the low 32 bits the free capacity
+    private static final long RUNG_STAMP = 1L << 32;
+
+    // Idle loop tuning: spin first, then yield, then park with a growing (but capped) timeout
+    private static final int SPIN_LIMIT = 64;
+    private static final int YIELD_LIMIT = 128;
+    private static final long MAX_PARK_NANOS = 1_000_000L;
+
+    // Attributes
+    private final int[] capacity;
+    private final AtomicLongArray rungCapacity;                         // free capacity of each rung, plus its stamp
+    private final AtomicLong state = new AtomicLong(EAST_BIT);
+    private final AtomicInteger eastWaiting = new AtomicInteger();      // apes blocked on the direction, per side
+    private final AtomicInteger westWaiting = new AtomicInteger();
+
+    /**
+     * Constructor for object initialization.
+     * @param _nRungs: Integer type. The capacity of the ladder (i.e., the number of rungs).
+     */
+    public LockFreeLadder(int _nRungs) {
+        this(Ladder.singleCapacity(_nRungs));
+    }
+
+    /**
+     * Constructor for object initialization with rungs that can hold more than one ape each.
+     * @param capacities: integer array type. How many apes each rung can hold at once, all at least 1.
+     */
+    public LockFreeLadder(int[] capacities) {
+        for (int i=0; i<capacities.length; i++) {
+            if (capacities[i] < 1) {
+                throw new IllegalArgumentException("rung " + i + " needs room for at least one ape");
+            }
+        }
+        capacity = capacities.clone();
+        rungCapacity = new AtomicLongArray(capacities.length);
+        for (int i=0; i<capacities.length; i++) {
+            rungCapacity.set(i, capacities[i]);
+        }
+    }
+
+    @Override
+    public int nRungs() {
+        return rungCapacity.length();
+    }
+
+    @Override
+    public int getNumApe() {
+        return (int) (state.get() & COUNT_MASK);
+    }
+
+    @Override
+    public boolean isEastBound() {
+        return (state.get() & EAST_BIT) != 0;
+    }
+
+    @Override
+    public int waitingApes(boolean goingEast) {
+        return (goingEast ? eastWaiting : westWaiting).get();
+    }
+
+    /**
+     * Lock-free snapshot by double collect: read the state word and every rung slot, then read them all again, until
+     *  two reads in a row agree. Every change bumps the stamp of the word or slot it changes, so equal reads mean
+     *  nothing changed in between, not even and back again, and the picture is the ladder as it was at the end of
+     *  the first read. (A stamp would have to go all the way round, 2^31 changes of the state word or 2^32 of one
+     *  rung, during a single collect to fool it.)
+     * @return the rung occupancy, direction and ape count as they were at one moment.
+     */
+    @Override
+    public LadderSnapshot snapshot() {
+        int rungs = rungCapacity.length();
+        long[] slots = new long[rungs];
+        long[] again = new long[rungs];
+        long before = collect(slots);
+        for (int attempt = 0; ; attempt++) {
+            long after = collect(again);
+            if (after == before && Arrays.equals(slots, again)) {
+                // The stamps add up to the number of changes so far, which serves as the version
+                long version = before >>> 33;
+                int[] occupancy = new int[rungs];
+                for (int i = 0; i < rungs; i++) {
+                    occupancy[i] = capacity[i] - (int) slots[i];
+                    version += slots[i] >>> 32;
+                }
+                return new LadderSnapshot(version, (before & EAST_BIT) != 0, (int) (before & COUNT_MASK), occupancy);
+            }
+            long[] swap = slots;
+            slots = again;
+            again = swap;
+            before = after;
+            if (attempt >= 64) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /** Read the state word, then every rung slot into slots. */
+    private long collect(long[] slots) {
+        long current = state.get();
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = rungCapacity.get(i);
+        }
+        return current;
+    }
+
+    /**
+     * Lock-free grab rung function. An ape getting on the ladder first joins the ladder direction with a CAS on the
+     *  state word, then every ape claims its rung with a CAS on that rung's slot only.
+     */
+    @Override
+    public boolean grabRung(String name, int which, boolean goingEast) throws InterruptedException {
+        return grab(which, goingEast, false, 0L);
+    }
+
+    /**
+     * Timed grab rung function: same as grabRung, but gives up at the timeout and then leaves the ladder as it was.
+     */
+    @Override
+    public boolean tryGrabRung(String name, int which, boolean goingEast, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return grab(which, goingEast, true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Shared body of grabRung and the timed tryGrabRung.
+     * @param timed: boolean type. Whether to give up at the deadline.
+     * @param deadline: long type. System.nanoTime() to give up at, if timed.
+     * @return true if the ape has grabbed the rung, false if the deadline passed first.
+     */
+    private boolean grab(int which, boolean goingEast, boolean timed, long deadline) throws InterruptedException {
+
+        boolean newApeOnLadder = ((goingEast && which == 0) || (!goingEast && which == nRungs() - 1));
+
+        if (newApeOnLadder && !joinLadder(goingEast, timed, deadline)) {
+            return false;
+        }
+
+        boolean gotIt = false;
+        try {
+            gotIt = takeRung(which, timed, deadline);
+        } finally {
+            // Never got onto the ladder after all, so give the direction back
+            if (!gotIt && newApeOnLadder) {
+                leaveLadder();
+            }
+        }
+
+        return gotIt;
+    }
+
+    /**
+     * Non-blocking version of grabRung: joins the ladder direction and claims the rung only if both are possible
+     *  right now, and backs out of the direction count again if the rung turns out to be taken.
+     */
+    @Override
+    public boolean tryGrabRung(String name, int which, boolean goingEast) {
+
+        boolean newApeOnLadder = ((goingEast && which == 0) || (!goingEast && which == nRungs() - 1));
+
+        if (newApeOnLadder && !tryJoinLadder(goingEast)) {
+            return false;
+        }
+
+        if (!tryTakeRung(which)) {
+            if (newApeOnLadder) {
+                leaveLadder();
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Lock-free release rung function. The ladder is one lane, so the direction makes no difference.
+     * @param which: integer type. Index of the rung to release.
+     */
+    @Override
+    public void releaseRung(String name, int which, boolean goingEast) {
+
+        // First, release the rung
+        freeRung(which);
+
+        // Decrease ape by 1 if ape reaches the other side
+        boolean eastBound = isEastBound();
+        boolean reachesTheOtherSide = ((eastBound && (which + 1) == nRungs()) || (!eastBound && which == 0));
+        if (reachesTheOtherSide) {
+            leaveLadder();
+        }
+    }
+
+    /**
+     * Lock-free fall off function: frees the rung and the ape's place on the ladder. The ladder is one lane, so the
+     *  direction makes no difference.
+     * @param which: integer type. Index of the rung the ape holds.
+     */
+    @Override
+    public void fallOff(String name, int which, boolean goingEast) {
+        freeRung(which);
+        leaveLadder();
+    }
+
+    /** Give one unit of capacity back to a rung, bumping its stamp. */
+    private void freeRung(int which) {
+        rungCapacity.getAndAdd(which, RUNG_STAMP + 1);
+    }
+
+    /**
+     * Take one ape off the ladder count, bumping the stamp. The count is non-zero here, so the borrow never reaches
+     *  the direction bit.
+     */
+    private void leaveLadder() {
+        state.getAndAdd(STATE_STAMP - 1);
+    }
+
+    /**
+     * Add the ape to the ladder count once the ladder is empty or already going the ape's way.
+     * @param goingEast: boolean type. Direction of the ape.
+     * @param timed: boolean type. Whether to give up at the deadline.
+     * @param deadline: long type. System.nanoTime() to give up at, if timed.
+     * @return true if the ape joined, false if the deadline passed first.
+     * @throws InterruptedException if the ape is interrupted while waiting.
+     */
+    private boolean joinLadder(boolean goingEast, boolean timed, long deadline) throws InterruptedException {
+        if (tryJoinLadder(goingEast)) {
+            return true;
+        }
+        // Only apes that actually have to wait touch the waiting counters
+        AtomicInteger waiting = goingEast ? eastWaiting : westWaiting;
+        waiting.incrementAndGet();
+        try {
+            int idle = 0;
+            while (!tryJoinLadder(goingEast)) {
+                if (timed && System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                idle = idle(idle);
+            }
+            return true;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Add the ape to the ladder count if the ladder is empty or already going the ape's way.
+     * @param goingEast: boolean type. Direction of the ape.
+     * @return true if the ape joined, false if the ladder is going the other way.
+     */
+    private boolean tryJoinLadder(boolean goingEast) {
+        long direction = goingEast ? EAST_BIT : 0L;
+        while (true) {
+            long current = state.get();
+            long count = current & COUNT_MASK;
+            if (count != 0 && (current & EAST_BIT) != direction) {
+                return false;
+            }
+            long stamp = (current & ~(EAST_BIT | COUNT_MASK)) + STATE_STAMP;
+            if (state.compareAndSet(current, stamp | direction | (count + 1))) {
+                return true;
+            }
+            // Lost a race with another ape getting on or off, just retry
+        }
+    }
+
+    /**
+     * Claim one unit of capacity on the given rung.
+     * @param which: integer type. Index of the rung to grab.
+     * @param timed: boolean type. Whether to give up at the deadline.
+     * @param deadline: long type. System.nanoTime() to give up at, if timed.
+     * @return true if the rung was claimed, false if the deadline passed first.
+     * @throws InterruptedException if the ape is interrupted while waiting.
+     */
+    private boolean takeRung(int which, boolean timed, long deadline) throws InterruptedException {
+        int idle = 0;
+        while (!tryTakeRung(which)) {
+            if (timed && System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            idle = idle(idle);
+        }
+        return true;
+    }
+
+    /**
+     * Claim one unit of capacity on the given rung if there is any.
+     * @param which: integer type. Index of the rung to grab.
+     * @return true if the rung was claimed, false if it is full.
+     */
+    private boolean tryTakeRung(int which) {
+        while (true) {
+            long slot = rungCapacity.get(which);
+            if ((int) slot < 1) {
+                return false;
+            }
+            if (rungCapacity.compareAndSet(which, slot, slot + RUNG_STAMP - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Back off while waiting for the ladder: spin, then yield, then park for exponentially longer periods.
+     * @param round: integer type. How many times the caller has idled so far.
+     * @return the round to pass in next time.
+     * @throws InterruptedException if the ape is interrupted while waiting.
+     */
+    private static int idle(int round) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (round < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else if (round < YIELD_LIMIT) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(round - YIELD_LIMIT, 10)));
+        }
+        return round + 1;
+    }
+}
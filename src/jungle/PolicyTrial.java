@@ -0,0 +1,86 @@
+/*
+Side-by-side trial of the direction-switching policies for the "Apes and Ladder" lab.
+
+Usage:
+    java jungle.PolicyTrial [eastbound apes] [westbound apes] [rungs] [seconds per policy] [rung delay in microseconds]
+
+    Every policy gets the same traffic mix on the LadderBenchmark harness: each ape crosses, wanders off for a random
+    time of up to one full crossing, and comes back to cross again until the time is up. For each side the trial
+    reports how many apes made it across and the average and worst time an ape waited to get its first rung.
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/** Runs the same traffic mix against a Ladder with each built-in DirectionPolicy. */
+class PolicyTrial {
+
+    /** Per-side results of one trial. */
+    private static class SideStats {
+        final AtomicLong crossings = new AtomicLong();
+        final AtomicLong totalWait = new AtomicLong();
+        final AtomicLong worstWait = new AtomicLong();
+
+        void record(long waitNanos) {
+            crossings.incrementAndGet();
+            totalWait.addAndGet(waitNanos);
+            worstWait.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        String summary(String side, double seconds) {
+            long n = crossings.get();
+            return String.format("%s %8.1f crossings/s   avg wait %8.2f ms   worst wait %8.2f ms", side, n / seconds,
+                    n == 0 ? 0.0 : totalWait.get() / 1e6 / n, worstWait.get() / 1e6);
+        }
+    }
+
+    /**
+     * Run one trial against a fresh ladder with the given policy.
+     * @return {east stats, west stats}.
+     */
+    private static SideStats[] trial(DirectionPolicy policy, int east, int west, int rungs, long durationNanos,
+                                     long delayNanos) throws InterruptedException {
+        Ladder ladder = new Ladder(rungs, false, policy);
+        SideStats[] stats = {new SideStats(), new SideStats()};
+        LadderBenchmark.crowd(east + west, (double) east / (east + west), System.nanoTime() + durationNanos,
+                (ape, name, goingEast) -> {
+                    stats[goingEast ? 0 : 1].record(LadderBenchmark.cross(ladder, name, goingEast, delayNanos));
+                    LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(delayNanos * rungs + 1));
+                    return true;
+                });
+        return stats;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int east = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        int west = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int rungs = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 3.0;
+        long delayNanos = (args.length > 4 ? Long.parseLong(args[4]) : 200) * 1000L;
+
+        Map<String, DirectionPolicy> policies = new LinkedHashMap<>();
+        policies.put("until clear", DirectionPolicy.untilClear());
+        policies.put("alternate", DirectionPolicy.alternate());
+        policies.put("batch of 8", DirectionPolicy.boundedBatch(8));
+        policies.put("time slice", DirectionPolicy.timeSlice(delayNanos * rungs * 4));
+        policies.put("queue weighted", DirectionPolicy.queueWeighted(4));
+
+        System.out.println(east + " eastbound and " + west + " westbound apes on " + rungs + " rungs, "
+                + seconds + " s per policy \n");
+        for (Map.Entry<String, DirectionPolicy> entry : policies.entrySet()) {
+            SideStats[] stats = trial(entry.getValue(), east, west, rungs, (long) (seconds * 1e9), delayNanos);
+            System.out.println(entry.getKey() + ":");
+            System.out.println("  " + stats[0].summary("east", seconds));
+            System.out.println("  " + stats[1].summary("west", seconds));
+            System.out.printf("  total %8.1f crossings/s %n%n",
+                    (stats[0].crossings.get() + stats[1].crossings.get()) / seconds);
+        }
+    }
+}
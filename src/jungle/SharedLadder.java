@@ -0,0 +1,167 @@
+/*
+Common ladder interface for the "Apes and Ladder" lab.
+
+Both the original lock-and-conditions Ladder and the alternative implementations speak this interface, so the Apes
+(and anything else that drives a ladder) don't need to care which one they are climbing.
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A ladder shared by many apes. Implementations must guarantee that:
+ *  - no rung ever holds more apes than its capacity,
+ *  - apes going opposite directions are never on the same lane at the same time (an ordinary ladder is one lane;
+ *    a TwoLaneLadder gives each direction a lane of its own),
+ *  - an ape that is on the ladder always makes progress (no deadlock).
+ *
+ * grabRung() may wait as long as it takes; callers that need a bound on their crossing time use the timed
+ *  tryGrabRung() and back off, reroute or fallOff() when it runs out.
+ */
+interface SharedLadder {
+
+    /**
+     * Retrieves the ladder capacity (i.e., the number of rungs).
+     * @return an integer representing the ladder capacity.
+     */
+    int nRungs();
+
+    /**
+     * Retrieve the number of apes on the ladder now.
+     * @return Integer type. Represents the number of apes on the ladder now. Should be non-negative.
+     */
+    int getNumApe();
+
+    /**
+     * Retrieve the current ladder direction.
+     * @return true if the ladder is (or was last) east bound.
+     */
+    boolean isEastBound();
+
+    /**
+     * Retrieve how many apes are waiting to get on the ladder going one way. Only a hint: the number may already be
+     *  out of date when the caller looks at it.
+     * @param goingEast: boolean type. Which side to count.
+     * @return the number of apes waiting on that side.
+     */
+    int waitingApes(boolean goingEast);
+
+    /**
+     * Count apes that wait to get on without blocking in grabRung(), such as the queues a single-threaded simulation
+     *  keeps itself, so that the ladder's direction policy (and waitingApes()) sees them. Take an ape off the count
+     *  again right before it calls tryGrabRung(), which counts the ape itself while it decides. Ladders without a
+     *  direction policy may ignore this, which is the default.
+     * @param goingEast: boolean type. Which side the apes wait on.
+     * @param apes: integer type. How many apes start waiting, or stop waiting if negative.
+     */
+    default void addWaiting(boolean goingEast, int apes) {
+    }
+
+    /**
+     * Take a consistent picture of the ladder without making any ape wait.
+     * @return the rung occupancy, direction and ape count as they were at one moment.
+     */
+    LadderSnapshot snapshot();
+
+    /**
+     * Grab a rung, waiting until it is safe to do so.
+     * @param name: string type. Name of the ape.
+     * @param which: integer type. Index of the rung to grab.
+     * @param goingEast: boolean type. True if the ape is going east, and false if the ape is going west.
+     * @return true to indicate that the ape has grabbed the rung.
+     * @throws InterruptedException if the ape is interrupted while waiting.
+     */
+    boolean grabRung(String name, int which, boolean goingEast) throws InterruptedException;
+
+    /**
+     * Grab a rung only if that can be done right away, without waiting. Used by callers that do their own waiting,
+     *  such as the discrete-event simulation.
+     * @param name: string type. Name of the ape.
+     * @param which: integer type. Index of the rung to grab.
+     * @param goingEast: boolean type. True if the ape is going east, and false if the ape is going west.
+     * @return true if the ape has grabbed the rung, false if it would have had to wait.
+     */
+    boolean tryGrabRung(String name, int which, boolean goingEast);
+
+    /**
+     * Grab a rung, waiting at most the given time. If the ape was getting on the ladder and gives up, it is not on
+     *  the ladder at all; if it was already on the ladder, it still holds its previous rung and has to either try
+     *  again or fallOff().
+     * @param name: string type. Name of the ape.
+     * @param which: integer type. Index of the rung to grab.
+     * @param goingEast: boolean type. True if the ape is going east, and false if the ape is going west.
+     * @param timeout: long type. Longest time to wait.
+     * @param unit: unit of the timeout.
+     * @return true if the ape has grabbed the rung, false if the time ran out first.
+     * @throws InterruptedException if the ape is interrupted while waiting.
+     */
+    boolean tryGrabRung(String name, int which, boolean goingEast, long timeout, TimeUnit unit)
+            throws InterruptedException;
+
+    /**
+     * Release a rung previously grabbed by the ape. A ladder with a lane per direction needs the direction to tell
+     *  which lane's rung to release; a ladder that is one lane ignores it.
+     * @param name: string type. Name of the ape.
+     * @param which: integer type. Index of the rung to release.
+     * @param goingEast: boolean type. True if the ape is going east, and false if the ape is going west.
+     */
+    void releaseRung(String name, int which, boolean goingEast);
+
+    /**
+     * Move one rung: grab the next rung and release the one the ape holds. The ape never lets go of its rung before
+     *  it has the next one. Implementations that can do both in one step should; the default simply calls
+     *  grabRung() and then releaseRung().
+     * @param name: string type. Name of the ape.
+     * @param from: integer type. Index of the rung the ape holds.
+     * @param to: integer type. Index of the rung to move to, next to from.
+     * @return true to indicate that the ape has moved.
+     * @throws InterruptedException if the ape is interrupted while waiting; it still holds from then.
+     */
+    default boolean advance(String name, int from, int to) throws InterruptedException {
+        grabRung(name, to, to > from);
+        releaseRung(name, from, to > from);
+        return true;
+    }
+
+    /**
+     * Move one rung like advance(), waiting at most the given time for the next rung.
+     * @param name: string type. Name of the ape.
+     * @param from: integer type. Index of the rung the ape holds.
+     * @param to: integer type. Index of the rung to move to, next to from.
+     * @param timeout: long type. Longest time to wait.
+     * @param unit: unit of the timeout.
+     * @return true if the ape has moved, false if the time ran out first and the ape still holds from.
+     * @throws InterruptedException if the ape is interrupted while waiting; it still holds from then.
+     */
+    default boolean tryAdvance(String name, int from, int to, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        if (!tryGrabRung(name, to, to > from, timeout, unit)) {
+            return false;
+        }
+        releaseRung(name, from, to > from);
+        return true;
+    }
+
+    /**
+     * Let go of the rung the ape holds and drop off the ladder without reaching the other side (into the river with
+     *  the crocodiles). Frees the ape's place on the ladder just as finishing the crossing would. The direction is
+     *  needed for the same reason as in releaseRung().
+     * @param name: string type. Name of the ape.
+     * @param which: integer type. Index of the rung the ape holds.
+     * @param goingEast: boolean type. True if the ape is going east, and false if the ape is going west.
+     */
+    void fallOff(String name, int which, boolean goingEast);
+
+    /**
+     * Retrieve the part of the ladder that apes going one way climb: the whole ladder, unless it keeps a lane per
+     *  direction. Its state (direction, apes on it, apes waiting) is what an ape going that way has to get past.
+     * @param goingEast: boolean type. Direction of the ape.
+     * @return the ladder or lane apes going that way climb.
+     */
+    default SharedLadder lane(boolean goingEast) {
+        return this;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+Two-lane "Apes and Ladder" implementation.
+
+An ordinary ladder carries one direction at a time, so with traffic coming from both sides half the apes are always
+waiting for the ladder to clear. A TwoLaneLadder is two ladders of the same length side by side: eastbound apes only
+ever climb the east lane and westbound apes only the west lane. Each lane is a lock-based Ladder that never changes
+direction, so both directions cross at the same time and nobody waits for a direction switch.
+
+Safety and deadlock freedom carry over from Ladder: within a lane every ape moves the same way and only waits for the
+rung in front of it, and the two lanes share nothing.
+
+Usage:
+    SharedLadder ladder = new TwoLaneLadder(4, false);      // or new TwoLaneLadder(capacities, false)
+
+    Apes going opposite ways may hold the same rung number on their two lanes, which is why every SharedLadder's
+    releaseRung() and fallOff() take the ape's direction; advance() can tell it from the rung numbers.
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.concurrent.TimeUnit;
+
+
+/** Two one-way Ladders side by side, one per direction. */
+class TwoLaneLadder implements SharedLadder {
+
+    // Attributes
+    private final Ladder eastLane;
+    private final Ladder westLane;
+
+    /**
+     * Constructor for object initialization.
+     * @param _nRungs: Integer type. The number of rungs of each lane.
+     */
+    public TwoLaneLadder(int _nRungs, boolean debug) {
+        this(Ladder.singleCapacity(_nRungs), debug);
+    }
+
+    /**
+     * Constructor for object initialization with rungs that can hold more than one ape each.
+     * @param capacities: integer array type. How many apes each rung of each lane can hold at once.
+     */
+    public TwoLaneLadder(int[] capacities, boolean debug) {
+        // A lane never sees the other direction, so the direction policy never comes into play
+        eastLane = new Ladder(capacities, debug, DirectionPolicy.untilClear());
+        westLane = new Ladder(capacities, debug, DirectionPolicy.untilClear());
+    }
+
+    /**
+     * Retrieve the lane used by one direction.
+     * @param goingEast: boolean type. Direction of the ape.
+     * @return the lane apes going that way climb.
+     */
+    @Override
+    public Ladder lane(boolean goingEast) {
+        return goingEast ? eastLane : westLane;
+    }
+
+    /** Stop both lanes' debug printing threads, see Ladder.close(). */
+    public void close() {
+        eastLane.close();
+        westLane.close();
+    }
+
+    @Override
+    public int nRungs() {
+        return eastLane.nRungs();
+    }
+
+    @Override
+    public int getNumApe() {
+        return eastLane.getNumApe() + westLane.getNumApe();
+    }
+
+    /**
+     * Both directions are always open, so this only tells which lane is busier.
+     * @return true if at least as many apes are on the east lane as on the west lane.
+     */
+    @Override
+    public boolean isEastBound() {
+        return eastLane.getNumApe() >= westLane.getNumApe();
+    }
+
+    @Override
+    public int waitingApes(boolean goingEast) {
+        return lane(goingEast).waitingApes(goingEast);
+    }
+
+    @Override
+    public void addWaiting(boolean goingEast, int apes) {
+        lane(goingEast).addWaiting(goingEast, apes);
+    }
+
+    /**
+     * Each lane is pictured consistently, but the two lanes are read one after the other.
+     * @return apes per rung over both lanes, with the direction of the busier lane.
+     */
+    @Override
+    public LadderSnapshot snapshot() {
+        LadderSnapshot east = eastLane.snapshot();
+        LadderSnapshot west = westLane.snapshot();
+        int[] occupancy = new int[east.nRungs()];
+        for (int i = 0; i < occupancy.length; i++) {
+            occupancy[i] = east.occupancy(i) + west.occupancy(i);
+        }
+        return new LadderSnapshot(east.version + west.version, east.apesOnLadder >= west.apesOnLadder,
+                east.apesOnLadder + west.apesOnLadder, occupancy);
+    }
+
+    @Override
+    public boolean grabRung(String name, int which, boolean goingEast) throws InterruptedException {
+        return lane(goingEast).grabRung(name, which, goingEast);
+    }
+
+    @Override
+    public boolean tryGrabRung(String name, int which, boolean goingEast) {
+        return lane(goingEast).tryGrabRung(name, which, goingEast);
+    }
+
+    @Override
+    public boolean tryGrabRung(String name, int which, boolean goingEast, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return lane(goingEast).tryGrabRung(name, which, goingEast, timeout, unit);
+    }
+
+    @Override
+    public void releaseRung(String name, int which, boolean goingEast) {
+        lane(goingEast).releaseRung(name, which);
+    }
+
+    @Override
+    public boolean advance(String name, int from, int to) throws InterruptedException {
+        return lane(to > from).advance(name, from, to);
+    }
+
+    @Override
+    public boolean tryAdvance(String name, int from, int to, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return lane(to > from).tryAdvance(name, from, to, timeout, unit);
+    }
+
+    @Override
+    public void fallOff(String name, int which, boolean goingEast) {
+        lane(goingEast).fallOff(name, which);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+Wait strategies for apes waiting on the lock-based Ladder.
+
+By default an ape that cannot move goes straight to Condition.await(), which parks its thread until another ape
+signals it. When apes only hold a rung for a moment, that park/unpark round trip costs more than the wait itself. A
+WaitStrategy lets the ape watch the ladder for a while first, without holding the lock: the ladder bumps a change
+counter on every move, and the ape only takes the lock again to re-check once the counter has moved.
+
+    blocking()                  await right away, as before; costs no CPU while waiting
+    busySpin()                  spin on the counter until it moves; lowest latency, burns a whole CPU per waiter
+    spinThenYield(spins)        spin a little, then keep yielding the CPU to other threads until the counter moves
+    adaptiveSpinThenPark()      spin for a while that adapts to how often spinning paid off recently, then await
+
+Spinning only helps with spare cores: an ape that spins on a busy machine takes CPU time away from the ape it is
+waiting for.
+ */
+
+package jungle;
+
+// Java Imports
+import java.util.function.LongSupplier;
+
+
+/** How an ape waits for the ladder to change before (or instead of) blocking on its Condition. */
+interface WaitStrategy {
+
+    /**
+     * Wait, without holding the ladder lock, for the ladder's change counter to move.
+     * @param changes: reads the ladder's change counter.
+     * @param seen: long type. The counter when the ape found it had to wait.
+     * @param timed: boolean type. Whether to give up at the deadline.
+     * @param deadline: long type. System.nanoTime() to give up at, if timed.
+     * @return true once the counter has moved, false if the ape should block on its Condition instead (or the
+     *  deadline has passed).
+     * @throws InterruptedException if the ape is interrupted while waiting.
+     */
+    boolean spinUntilChanged(LongSupplier changes, long seen, boolean timed, long deadline)
+            throws InterruptedException;
+
+    /** @return false if the strategy never spins, so the ladder can block right away without letting go of the lock. */
+    default boolean spins() {
+        return true;
+    }
+
+    /**
+     * The original behavior: block on the Condition right away.
+     * @return the strategy.
+     */
+    static WaitStrategy blocking() {
+        return new WaitStrategy() {
+            @Override
+            public boolean spinUntilChanged(LongSupplier changes, long seen, boolean timed, long deadline) {
+                return false;
+            }
+
+            @Override
+            public boolean spins() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Spin on the change counter until it moves, never blocking.
+     * @return the strategy.
+     */
+    static WaitStrategy busySpin() {
+        return (changes, seen, timed, deadline) -> {
+            while (changes.getAsLong() == seen) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (timed && System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                Thread.onSpinWait();
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Spin for a fixed number of rounds, then yield the CPU between looks until the counter moves. Never blocks.
+     * @param spins: integer type. Rounds to spin before starting to yield.
+     * @return the strategy.
+     */
+    static WaitStrategy spinThenYield(int spins) {
+        return (changes, seen, timed, deadline) -> {
+            for (int round = 0; changes.getAsLong() == seen; round++) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (timed && System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                if (round < spins) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Spin for a while, then block on the Condition. Every spin that sees the ladder change doubles the spin limit
+     *  for the next ape (up to 16384 rounds), and every spin that runs out halves it (down to 16), so apes keep
+     *  spinning while it pays off and quickly go back to blocking when it doesn't.
+     * @return the strategy.
+     */
+    static WaitStrategy adaptiveSpinThenPark() {
+        return new AdaptiveSpin();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+Scheduler that drives every simulated account of the social network from a few shared threads.
+
+Accounts.main() used to start one platform thread per account, and each of those spent nearly all of its life in
+Thread.sleep() between two actions: a thousand accounts meant a thousand mostly idle OS threads, each with its own
+stack, and a million accounts could not start at all. An account has nothing to remember between two actions,
+though, so here it is just a task in a shared timer queue: its next action is scheduled for when it comes back from
+stepping away, and once the action is done it schedules the one after. A million waiting accounts are a million
+small queue entries, and only as many threads as there are processors run the actions.
+
+Usage:
+    AccountScheduler scheduler = new AccountScheduler(accounts, Runtime.getRuntime().availableProcessors());
+    scheduler.start(numAccounts);                   // returns right away; accounts act in the background
+    ...
+    scheduler.stop();
+
+    Delays are simulated time, converted through the Accounts' SimulatedClock (see Accounts.speedUp()), so a run at
+    speed-up 60 replays an hour of activity per minute with the same mix of posts and views. If the actions can't
+    keep up (say, because the output is blocked), accounts simply act late; lag() tells how late.
+
+NOTE: Results are at the bottom.
+ */
+
+package lab2;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/** Runs simulated accounts as timer tasks on a small shared pool instead of a thread each. */
+class AccountScheduler {
+
+    // Attributes
+    private final Accounts accounts;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicLong actions = new AtomicLong();
+    private final AtomicLong lagNanos = new AtomicLong();      // total lateness of all actions so far
+
+    /**
+     * Constructor for object initialization.
+     * @param accounts: Accounts type. The accounts to drive, with followGraph() already set up.
+     * @param threads: integer type. How many threads run the actions.
+     */
+    AccountScheduler(Accounts accounts, int threads) {
+        this.accounts = accounts;
+        AtomicInteger count = new AtomicInteger();
+        this.timer = new ScheduledThreadPoolExecutor(threads, r -> {
+            Thread t = new Thread(r, "account-scheduler-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Start simulating accounts 0 .. numAccounts - 1. Each one first steps away, then keeps acting until stop().
+     * @param numAccounts: integer type. Number of accounts.
+     */
+    public void start(int numAccounts) {
+        for (int account = 0; account < numAccounts; account++) {
+            stepAway(account);
+        }
+    }
+
+    /** Stop every account. Actions already running finish; nothing new starts. */
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    /** @return the number of actions (posts and views) done so far. */
+    public long actions() {
+        return actions.get();
+    }
+
+    /** @return how late the actions so far started, on average, in real milliseconds. */
+    public double lag() {
+        long n = actions.get();
+        return n == 0 ? 0 : lagNanos.get() / 1e6 / n;
+    }
+
+    /** Let an account step away, and have it come back for its next action once it is done. */
+    private void stepAway(int account) {
+        long delay = accounts.clock().realNanos(accounts.stepAway(account));
+        long due = System.nanoTime() + delay;
+        try {
+            timer.schedule(() -> act(account, due), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // stop() was called: the account is done
+        }
+    }
+
+    /** Do the account's next action, then let it step away again, even if the action failed. */
+    private void act(int account, long due) {
+        lagNanos.addAndGet(Math.max(0, System.nanoTime() - due));
+        try {
+            accounts.act(account);
+            actions.incrementAndGet();
+        } catch (RuntimeException e) {
+            // The executor would swallow it and the account would never act again; one failed action is enough
+            System.err.println("account " + account + " failed to act: " + e);
+        } finally {
+            stepAway(account);
+        }
+    }
+}
+
+
+/*
+Results (1 CPU sandbox, JDK 17, -Xmx2g, output to /dev/null through OutputSink; "scheduling heap" = heap growth
+after full GCs once the accounts are started, which also counts the posts made meanwhile):
+
+    one platform thread per account (before)
+        10000 accounts          6.9 s to start, 426 MB more resident memory
+        100000 accounts         did not finish starting within 2 minutes (this sandbox allows 23960 threads)
+
+    AccountScheduler, 8 threads in the whole JVM
+        accounts    speed-up    expected        done after 30 s         average lag    scheduling heap
+        10000          50       50 K actions/s  1382119 (46 K/s)          18 ms           13 MB
+        1000000        0.5      50 K actions/s  1349586 (45 K/s)         205 ms          184 MB
+        1000000        1       100 K actions/s  1971031 (66 K/s)        4151 ms (growing)  179 MB
+
+Starting a million accounts takes 3.3 s and about 170 bytes of heap each for their queued tasks. Scheduling is not
+what limits the simulation: rescheduling an account into a queue of a million costs 0.27 us, while the action
+itself (printing, posting or rendering a home timeline) costs about 9.5 us on this machine. So one CPU keeps up with
+about 60 K actions a second, which is a million accounts at half real time. At real time it falls behind and lag()
+keeps growing. With more cores the actions spread over availableProcessors() threads.
+ */
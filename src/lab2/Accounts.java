@@ -0,0 +1,299 @@
+/*
+The simulated accounts of the social network: posting, viewing and following, safe to call from any number of threads.
+
+Usage:
+    Accounts accounts = new Accounts();             // or new Accounts(posts) / new Accounts(posts, out)
+    accounts.followGraph(names, new Random());
+    accounts.post(account); accounts.viewHome(account);
+    accounts.main();                                // the interactive simulation SocialNetwork runs
+ */
+
+package lab2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Random;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/** Concurrent accounts for social network simulations */
+class Accounts {
+
+    // Append-only post store; the lock-free heap PostLog unless told otherwise, so viewing never waits at all
+    private final PostStore posts;
+
+    // Simulated accounts: names, who follows whom and each account's home timeline; set up by followGraph()
+    private String[] names;
+    private int[] authorOf;                 // author id in the PostLog of each account
+    private final int contentId;
+    private HomeTimelines timelines;
+
+    // The latest 6 posts, already rendered for view(); refreshed by every post
+    private final RenderedFeed latestSix;
+
+    // Every new post, pushed to whoever subscribed instead of them polling view()
+    private final PostPublisher newPosts;
+
+    // Posts by author and by word, for viewBy() and search(); brought up to date by every post
+    private final PostIndex index;
+
+    // Everything the simulation prints goes through here, so no account ever waits for the terminal
+    private final OutputSink out;
+
+    // Simulated time: post times and time spent away from social media; real time unless sped up
+    private volatile SimulatedClock clock = new SimulatedClock(1);
+
+    /** Constructor: keep the posts on the heap. */
+    Accounts() {
+        this(new PostLog());
+    }
+
+    /** Constructor: print to standard output.
+     * @param posts: PostStore type. Where to keep the posts.
+     */
+    Accounts(PostStore posts) {
+        this(posts, OutputSink.stdout());
+    }
+
+    /** Constructor
+     * @param posts: PostStore type. Where to keep the posts.
+     * @param out: OutputSink type. Where to print; closed at the end of main().
+     */
+    Accounts(PostStore posts, OutputSink out) {
+        this.posts = posts;
+        this.out = out;
+        this.contentId = posts.contentId(Post.CONTENT);
+        this.latestSix = new RenderedFeed(posts, 6);
+        this.newPosts = new PostPublisher(posts, ForkJoinPool.commonPool());
+        this.index = new PostIndex(posts);
+    }
+
+    /** Set up the simulated accounts and who follows whom.
+     *
+     * Each account follows 10 others on average (fewer in a small simulation), picked so that a handful of accounts
+     *  end up with many followers. Accounts with more than 10000 followers are read on demand instead of being
+     *  pushed to every follower's home timeline.
+     *
+     * @param names: String array type. Author name of every account; accounts are numbered by their index.
+     * @param random: Random type. Random number generator to build the graph from.
+     */
+    public void followGraph(String[] names, Random random) {
+        FollowGraph graph = FollowGraph.random(names.length, 10, 3.0, random);
+        this.timelines = new HomeTimelines(graph, 8, 10_000);
+        this.authorOf = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            authorOf[i] = posts.authorId(names[i]);
+        }
+        this.names = names;
+    }
+
+    /** Run the simulation faster than real time: set this before starting the accounts.
+     *
+     * @param factor: double type. Simulated seconds per real second, e.g. 60 for an hour per minute.
+     */
+    public void speedUp(double factor) {
+        this.clock = new SimulatedClock(factor);
+    }
+
+    /** @return the clock the simulation runs on. */
+    public SimulatedClock clock() {
+        return clock;
+    }
+
+    /** Post function to add posts to the log. Safe to call from any number of threads without locking.
+     *
+     * @param author: String type. The author/creator of the post.
+     */
+    public void post(String author){
+
+        // Add a new post to the log with the current time; its index is the number of posts before it
+        long count = posts.append(clock.millis(), author, Post.CONTENT) + 1;
+        latestSix.refresh();
+        index.refresh();
+        newPosts.signal();
+
+        // Print out how many posts there are currently
+        out.println("There are currently " + count + " posts. \n");
+    }
+
+    /** Post function for a simulated account: adds the post to the log and to its followers' home timelines.
+     *
+     * @param account: integer type. The account posting, numbered as in followGraph().
+     */
+    public void post(int account){
+
+        // Add to the log first, so the post can be read by the time it shows up in any timeline
+        long id = posts.append(clock.millis(), authorOf[account], contentId);
+        timelines.deliver(account, id);
+        latestSix.refresh();
+        index.refresh();
+        newPosts.signal();
+
+        out.println("There are currently " + (id + 1) + " posts. \n");
+    }
+
+    /** View function to retrieve the latest 6 posts, while others keep posting. */
+    public void view() {
+
+        // The last 6 posts, the last post first, were rendered when they were posted: print them in one go
+        out.write(latestSix.bytes());
+    }
+
+    /** View function to retrieve the latest 6 posts by one author.
+     *
+     * @param author: String type. The author's name, exactly.
+     */
+    public void viewBy(String author) {
+        long[] latest = new long[6];
+        int n = index.byAuthor(author, latest);
+        // Skip posts a store with retention has deleted since the index found them
+        long first = posts.first();
+        long size = posts.size();
+        for (int i = 0; i < n; i++) {
+            if (latest[i] >= first && latest[i] < size) {
+                out.println(posts.get(latest[i]).render());
+            }
+        }
+    }
+
+    /** Search function to retrieve the latest 6 posts containing a word.
+     *
+     * @param word: String type. The word to look for, in any case (e.g. "moon").
+     */
+    public void search(String word) {
+        long[] latest = new long[6];
+        int n = index.containing(word, latest);
+        // Skip posts a store with retention has deleted since the index found them
+        long first = posts.first();
+        long size = posts.size();
+        for (int i = 0; i < n; i++) {
+            if (latest[i] >= first && latest[i] < size) {
+                out.println(posts.get(latest[i]).render());
+            }
+        }
+    }
+
+    /** Follow every new post as it is posted, instead of calling view() over and over.
+     *
+     * The subscriber gets up to as many posts as it request()s, on a ForkJoinPool.commonPool() thread. If it falls
+     *  more than 1024 posts behind, it skips ahead to the latest 1024.
+     *
+     * @param subscriber: Flow.Subscriber type. Who to send the posts to.
+     */
+    public void subscribe(Flow.Subscriber<? super Post> subscriber) {
+        newPosts.subscribe(subscriber);
+    }
+
+    /** Follow every new post as it is posted, with a backlog limit and overflow policy of your own.
+     *
+     * @param subscriber: Flow.Subscriber type. Who to send the posts to.
+     * @param capacity: integer type. Most posts the subscriber may fall behind.
+     * @param overflow: PostPublisher.Overflow type. Skip ahead (DROP_OLDEST) or fail (ERROR) when it falls further.
+     */
+    public void subscribe(Flow.Subscriber<? super Post> subscriber, int capacity, PostPublisher.Overflow overflow) {
+        newPosts.subscribe(subscriber, capacity, overflow);
+    }
+
+    /** View function for a simulated account: retrieve the latest 6 posts of the accounts it follows.
+     *
+     * @param account: integer type. The account viewing, numbered as in followGraph().
+     */
+    public void viewHome(int account) {
+        long[] latest = new long[6];
+        int n = timelines.latest(account, latest);
+        // A post can be delivered before the store publishes it, while an earlier post is still being written; skip
+        //  those, as well as posts a store with retention has deleted since they were delivered
+        long first = posts.first();
+        long size = posts.size();
+        for (int i = 0; i < n; i++) {
+            if (latest[i] >= first && latest[i] < size) {
+                out.println(posts.get(latest[i]).render());
+            }
+        }
+    }
+
+    /** First half of a simulated account's turn: pick how long it stays away from social media, and say so.
+     *
+     * @param account: integer type. The account, numbered as in followGraph().
+     * @return how long it stays away, in simulated milliseconds.
+     */
+    public long stepAway(int account) {
+
+        // Get a random number of seconds for the account to stay away
+        int stepAway = ThreadLocalRandom.current().nextInt(20000);
+
+        // Simulate a person setting social media aside for a while
+        out.println(names[account] + " tries to step away from social media for " + stepAway / 1000 + " seconds... \n");
+        return stepAway;
+    }
+
+    /** Second half of a simulated account's turn, once it is back: randomly either post or view its home timeline.
+     *
+     * @param account: integer type. The account, numbered as in followGraph().
+     */
+    public void act(int account) {
+        String author = names[account];
+        if (ThreadLocalRandom.current().nextBoolean()) {
+            out.println(author + " couldn't resist the temptation and posted something...");
+            post(account);
+        }
+        else {
+            out.println(author + " couldn't resist the temptation and checks the latest 6 posts they follow, which are: ");
+            viewHome(account);
+        }
+    }
+
+    /** Main function for social network simulation with multiple accounts.
+     *
+     * With the given input number of accounts to simulate (and speed-up, if any), the function
+     *  will create the accounts and hand them to an AccountScheduler, which has each account
+     *  alternate between stepAway() and act() on a few shared threads. The simulation won't
+     *  stop until it is interrupted by terminal input (enter / next line).
+     *
+     * @throws IOException: Added for when readLine() is called.
+     */
+    public void main() throws IOException {
+
+        // Catch input numbers
+        BufferedReader reader = new BufferedReader (new InputStreamReader(System.in));
+
+        out.println("Enter the number of accounts you want for simulation, optionally followed by how many times "
+                + "faster than real time to run it (e.g. 1000000 60): ");
+
+        // Split the string into individual elements: the number of accounts, then the speed-up if there is one
+        String[] inputNums = reader.readLine().trim().split(" +");
+        int numAccounts = Integer.parseInt(inputNums[0]);
+        if (inputNums.length > 1) {
+            speedUp(Double.parseDouble(inputNums[1]));
+        }
+
+        // Create random number generator for account name creation
+        // Reference: https://www.geeksforgeeks.org/java-util-random-nextint-java/
+        Random random = new Random();
+
+        // Create the simulated accounts with random authors, and make them follow each other
+        String[] names = new String[numAccounts];
+        for (int i = 0; i < numAccounts; i++) {
+            names[i] = "Bot No." + random.nextInt(numAccounts * 100000);
+        }
+        followGraph(names, random);
+
+        // Start simulation: every account is a task on a few shared threads, not a thread of its own
+        AccountScheduler scheduler = new AccountScheduler(this, Runtime.getRuntime().availableProcessors());
+        scheduler.start(numAccounts);
+
+        // Give a prompt to stop the simulation
+        out.println("PRESS ENTER TO STOP SIMULATION");
+        reader.readLine();
+
+        // Once enter is detected, stop all accounts
+        scheduler.stop();
+
+        // Let subscribers know the feed has ended, then print whatever is still queued
+        newPosts.close();
+        out.close();
+    }
+}
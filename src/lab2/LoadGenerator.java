@@ -0,0 +1,319 @@
+/*
+Open-loop load generator for the social network's post() and view().
+
+Usage (one command from the project root):
+    javac -d out $(find src -name '*.java') && java -cp out lab2.LoadGenerator [key=value,value ...]
+
+    Keys (every combination of the given values is run):
+        rate=10000,100000       requests per second offered, posts and views together
+        arrival=poisson         poisson: exponential gaps between requests; fixed: evenly spaced requests
+        post=0.5                fraction of requests that are post(account); the rest are views
+        view=home               home: viewHome(account); latest: view(), the latest 6 posts of everyone
+        accounts=1000           number of simulated accounts; each request picks one at random
+        threads=4               client threads sending the requests
+        warmup=1 measure=3      seconds of warm-up and of measurement per combination
+
+    The load is open-loop: every request has an arrival time fixed in advance by the arrival process, whether or not
+    the requests before it are done, and its latency is measured from that intended arrival, not from when a client
+    thread got round to sending it. A closed-loop client that waits for each answer before sending the next one slows
+    down exactly when the system does, and then never records the requests it failed to send (coordinated omission),
+    so its percentiles look fine right up to the point of collapse. Here, once the offered rate is more than the
+    system can serve, requests queue up, latency grows with the queue, and the achieved rate falls short of the
+    offered one: that rate is the saturation point.
+
+    Each client thread sends rate / threads requests a second on its own arrival schedule (the sum of independent
+    Poisson streams is again a Poisson stream). The achieved rate counts every request done during the measurement
+    window. Requests due in it but still waiting to be sent at its end are reported as a backlog, and still sent
+    afterwards, so their latency (the whole wait included) counts in the percentiles too. The accounts print
+    into an OutputSink that throws the output away, so its writer thread still competes for CPU the way it does when
+    printing to a terminal.
+
+NOTE: Results are at the bottom.
+ */
+
+package lab2;
+
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import metrics.LatencyHistogram;
+
+
+/** Sends posts and views to Accounts at a fixed offered rate and reports throughput and latency percentiles. */
+class LoadGenerator {
+
+    // Sleep until this close to a request's arrival time, then yield until it is due: parkNanos overshoots
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /** What one combination of parameters measured. */
+    static final class Result {
+        final LatencyHistogram post = new LatencyHistogram();
+        final LatencyHistogram view = new LatencyHistogram();
+        long completed;                 // requests done during the measurement window, whenever they were due
+        long backlog;                   // requests due in the measurement window but only sent after it
+        double seconds;
+
+        double requestsPerSecond() {
+            return completed / seconds;
+        }
+    }
+
+    /**
+     * Offer load to one set of accounts.
+     * @param accounts: Accounts type. The accounts, with followGraph() set up.
+     * @param numAccounts: integer type. Number of accounts.
+     * @param rate: double type. Requests per second, all client threads together.
+     * @param poisson: boolean type. Exponential gaps if true, even gaps if false.
+     * @param postShare: double type. Fraction of requests that are posts.
+     * @param home: boolean type. Views are viewHome(account) if true, view() if false.
+     * @param threads: integer type. Number of client threads.
+     * @param warmupNanos: long type. Requests arriving before this are sent but not measured.
+     * @param measureNanos: long type. Length of the measurement window.
+     * @return the latencies of the requests that arrived during the measurement window, however late they were sent,
+     *  and how many requests were done during it.
+     */
+    static Result run(Accounts accounts, int numAccounts, double rate, boolean poisson, double postShare,
+                      boolean home, int threads, long warmupNanos, long measureNanos) throws InterruptedException {
+        double meanGapNanos = 1e9 * threads / rate;
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long measureStart = start + warmupNanos;
+        long end = measureStart + measureNanos;
+
+        Result[] results = new Result[threads];
+        Thread[] clients = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            Result result = results[t] = new Result();
+            // Fixed arrivals: stagger the threads so that together they send evenly spaced requests
+            long first = start + (poisson ? 0 : (long) (meanGapNanos * t / threads));
+            clients[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long intended = first + gap(random, meanGapNanos, poisson);
+                // Every request due before the end gets sent, however late: dropping the overdue ones would leave
+                //  out exactly the latencies that show the overload
+                while (intended < end) {
+                    long now = System.nanoTime();
+                    if (now >= end && intended >= measureStart) {
+                        result.backlog++;
+                    }
+                    if (intended - now > SPIN_NANOS) {
+                        LockSupport.parkNanos(intended - now - SPIN_NANOS);
+                    }
+                    while (System.nanoTime() < intended) {
+                        Thread.yield();
+                    }
+
+                    int account = random.nextInt(numAccounts);
+                    boolean post = random.nextDouble() < postShare;
+                    if (post) {
+                        accounts.post(account);
+                    } else if (home) {
+                        accounts.viewHome(account);
+                    } else {
+                        accounts.view();
+                    }
+                    // From when the request was due, not from when it was sent: time spent queued counts too
+                    long done = System.nanoTime();
+                    if (intended >= measureStart) {
+                        (post ? result.post : result.view).record(done - intended);
+                    }
+                    if (done >= measureStart && done < end) {
+                        result.completed++;
+                    }
+                    intended += gap(random, meanGapNanos, poisson);
+                }
+            }, "load-" + t);
+        }
+        for (Thread client : clients) {
+            client.start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        Result total = new Result();
+        for (Result result : results) {
+            total.post.merge(result.post);
+            total.view.merge(result.view);
+            total.completed += result.completed;
+            total.backlog += result.backlog;
+        }
+        total.seconds = measureNanos / 1e9;
+        return total;
+    }
+
+    /** Time to the next request: exponentially distributed for Poisson arrivals, constant otherwise. */
+    private static long gap(ThreadLocalRandom random, double meanGapNanos, boolean poisson) {
+        return Math.max(1, (long) (poisson ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos));
+    }
+
+    /**
+     * Set up a fresh network: accounts following each other, and one post per account (up to 10000) so the first
+     *  views have something to show.
+     */
+    private static Accounts network(int numAccounts, OutputSink out) {
+        Accounts accounts = new Accounts(new PostLog(), out);
+        Random random = new Random(42);
+        String[] names = new String[numAccounts];
+        for (int i = 0; i < numAccounts; i++) {
+            names[i] = "Bot No." + i;
+        }
+        accounts.followGraph(names, random);
+        for (int i = 0; i < Math.min(numAccounts, 10000); i++) {
+            accounts.post(i);
+        }
+        return accounts;
+    }
+
+    static Map<String, List<String>> parse(String[] args) {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        params.put("rate", List.of("10000", "100000"));
+        params.put("arrival", List.of("poisson"));
+        params.put("post", List.of("0.5"));
+        params.put("view", List.of("home"));
+        params.put("accounts", List.of("1000"));
+        params.put("threads", List.of("4"));
+        params.put("warmup", List.of("1"));
+        params.put("measure", List.of("3"));
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0 || !params.containsKey(arg.substring(0, eq))) {
+                throw new IllegalArgumentException("expected key=value[,value...] with key in " + params.keySet()
+                        + ", got " + arg);
+            }
+            params.put(arg.substring(0, eq), Arrays.asList(arg.substring(eq + 1).split(",")));
+        }
+        return params;
+    }
+
+    /** One combination of the swept parameters, parsed and checked before anything runs. */
+    private static final class Trial {
+        /** Swept keys, outermost first. */
+        private static final List<String> AXES = List.of("accounts", "arrival", "post", "view", "threads", "rate");
+
+        final String accounts;
+        final int numAccounts;
+        final String arrival;
+        final String post;
+        final double postShare;
+        final String view;
+        final String threads;
+        final int numThreads;
+        final String rate;
+        final double perSecond;
+
+        Trial(Map<String, String> values) {
+            accounts = values.get("accounts");
+            numAccounts = Integer.parseInt(accounts);
+            arrival = values.get("arrival");
+            if (!arrival.equals("poisson") && !arrival.equals("fixed")) {
+                throw new IllegalArgumentException("unknown arrival " + arrival + ", expected poisson or fixed");
+            }
+            post = values.get("post");
+            postShare = Double.parseDouble(post);
+            view = values.get("view");
+            if (!view.equals("home") && !view.equals("latest")) {
+                throw new IllegalArgumentException("unknown view " + view + ", expected home or latest");
+            }
+            threads = values.get("threads");
+            numThreads = Integer.parseInt(threads);
+            rate = values.get("rate");
+            perSecond = Double.parseDouble(rate);
+        }
+
+        /**
+         * Every combination of the swept values, in run order.
+         * @param params: the parsed arguments.
+         * @return one Trial per combination.
+         */
+        static List<Trial> all(Map<String, List<String>> params) {
+            List<Map<String, String>> combinations = List.of(Map.of());
+            for (String axis : AXES) {
+                List<Map<String, String>> grown = new ArrayList<>();
+                for (Map<String, String> combination : combinations) {
+                    for (String value : params.get(axis)) {
+                        Map<String, String> more = new LinkedHashMap<>(combination);
+                        more.put(axis, value);
+                        grown.add(more);
+                    }
+                }
+                combinations = grown;
+            }
+            List<Trial> trials = new ArrayList<>();
+            for (Map<String, String> combination : combinations) {
+                trials.add(new Trial(combination));
+            }
+            return trials;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, List<String>> params = parse(args);
+        long warmupNanos = (long) (Double.parseDouble(params.get("warmup").get(0)) * 1e9);
+        long measureNanos = (long) (Double.parseDouble(params.get("measure").get(0)) * 1e9);
+        // Parse every combination first, so a bad value fails before anything is set up
+        List<Trial> trials = Trial.all(params);
+
+        System.out.printf("%8s %-7s %4s %-6s %8s %7s %12s %9s   %s%n", "accounts", "arrival", "post", "view",
+                "threads", "offered", "achieved/s", "backlog", "latency (post, then view)");
+        for (Trial trial : trials) {
+            OutputSink out = new OutputSink(Channels.newChannel(OutputStream.nullOutputStream()), 8192, 64 << 10, 2,
+                    TimeUnit.MILLISECONDS, OutputSink.Overflow.BLOCK);
+            Accounts network = network(trial.numAccounts, out);
+            System.gc();
+            Result result = run(network, trial.numAccounts, trial.perSecond, trial.arrival.equals("poisson"),
+                    trial.postShare, trial.view.equals("home"), trial.numThreads, warmupNanos, measureNanos);
+            out.close();
+            System.out.printf("%8s %-7s %4s %-6s %8s %7s %12.0f %9d   post %s%n", trial.accounts, trial.arrival,
+                    trial.post, trial.view, trial.threads, trial.rate, result.requestsPerSecond(), result.backlog,
+                    result.post.summaryMillis());
+            System.out.printf("%80s   view %s%n", "", result.view.summaryMillis());
+        }
+    }
+}
+
+
+/*
+Results (1 CPU sandbox, JDK 17, accounts=1000 threads=4 arrival=poisson post=0.5 warmup=2 measure=2; every row from
+one back-to-back run of rate=10000,100000,200000,250000,300000,500000 view=home,latest):
+
+    view=home (viewHome(account): up to 6 posts rendered per view)
+        offered      achieved     backlog    post p50 / p99 / p999           view p50 / p99 / p999
+         10000        10011           1      0.013 / 0.92 / 2.03 ms          0.014 / 0.82 / 1.90 ms
+        100000       100494           8      0.005 / 1.38 / 3.02 ms          0.006 / 1.44 / 3.02 ms
+        200000       200431           2      21.0  / 151  / 159  ms          19.9  / 151  / 159  ms
+        250000       255419           2      0.688 / 75.5 / 82.8 ms          0.688 / 75.5 / 82.8 ms
+        300000       299628           4      0.028 / 5.77 / 12.1 ms          0.028 / 5.77 / 12.1 ms
+        500000       355652      696516      1678  / 2127 / 2127 ms          1678  / 2127 / 2127 ms
+
+    view=latest (view(): the pre-rendered latest 6)
+         10000        10080           0      0.012 / 0.52 / 6.03 ms          0.008 / 0.43 / 5.51 ms
+        100000       100272           1      0.007 / 1.38 / 2.36 ms          0.003 / 1.38 / 2.36 ms
+        200000       199770           2      0.007 / 1.11 / 3.67 ms          0.005 / 1.11 / 3.54 ms
+        250000       250012           3      0.006 / 1.18 / 3.02 ms          0.004 / 1.18 / 3.02 ms
+        300000       299413           4      0.006 / 0.98 / 3.02 ms          0.004 / 0.98 / 3.02 ms
+        500000       500157          96      0.041 / 5.51 / 8.39 ms          0.037 / 5.24 / 8.39 ms
+
+There is no single Accounts monitor left to saturate (posting and viewing went lock-free with PostLog), so what runs
+out here is the one CPU. With home timeline views it runs out between 300000 and 500000 requests a second: at 500000
+only about 356000 get done, and the median is the 1.7 s it takes to work through the backlog. Post and view latencies
+become the same there, because waiting in line dominates. Below that the median stays in the microseconds, and the
+p99 of a few ms is the clients, the output writer and the GC taking turns on one core. The 200000 and 250000 rows
+each caught a stall of 80-160 ms, long enough to queue up a good share of their requests behind it; they were caught
+up again by the end of the window. view() is cheap enough that 500000 a second does not saturate it. A closed-loop
+client (send, wait, send) would report the last home row as about 356000 requests a second at a few microseconds
+each.
+
+The backlog is sent after the window and its latency counted. A first version stopped at the end of the window and
+only counted the backlog, which left the latest, longest-waiting requests out of the percentiles: run back to back
+at 500000 a second, it reported a 1.97 s max where sending the backlog too gives 2.84 s. This sandbox varies a lot
+from run to run: on other runs within the same hour, home views already collapsed at 100000 and view=latest at
+300000, so read the saturation points as the best this machine managed, not as what it always manages.
+ */
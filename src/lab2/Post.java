@@ -0,0 +1,69 @@
+/*
+A post of the social network simulation, as read back out of a PostStore.
+
+Usage:
+    Post post = posts.get(id);
+    post.printPostDetail();                         // or out.println(post.render())
+ */
+
+package lab2;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+
+/** Post class to read a post back out of the PostLog in social network simulation */
+class Post {
+
+    // Make a fake post with author's name: every simulated post has this content, with {author} standing for the name
+    static final String CONTENT = "{author} TO THE MOON !!!!!!";
+
+    // One formatter for every post: unlike SimpleDateFormat, DateTimeFormatter is immutable and safe to share
+    // Reference: https://docs.oracle.com/javase/8/docs/api/java/time/format/DateTimeFormatter.html
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd 'at' HH:mm:ss z").withZone(ZoneId.systemDefault());
+
+    // Attributes
+    private final String author;
+    private final String content;
+    private final long postTime;        // milliseconds since the epoch, formatted only when printed
+
+    /** Constructor
+     * @param author: String type. The author/creator of the post.
+     * @param content: String type. The content, where {author} stands for the author's name.
+     * @param postTime: long type. When it was posted, in milliseconds since the epoch.
+     */
+    Post(String author, String content, long postTime) {
+        this.author = author;
+        this.content = content;
+        this.postTime = postTime;
+    }
+
+    /** Retrieve post attributes and print the formatted version of the post. */
+    public void printPostDetail() {
+        // One println for the whole post, so posts printed by concurrent viewers don't get their lines mixed up
+        System.out.println(render());
+    }
+
+    /** @return the author/creator of the post. */
+    public String author() {
+        return author;
+    }
+
+    /** @return the content of the post, with {author} standing for the author's name. */
+    public String content() {
+        return content;
+    }
+
+    /** Retrieve post attributes and format them the way printPostDetail() prints them (minus the last line break).
+     *
+     * @return the formatted post.
+     */
+    public String render() {
+        return "Author: " + author + "\n"
+                + "Time Posted: " + TIME_FORMAT.format(Instant.ofEpochMilli(postTime)) + "\n"
+                + "Post Content: \n"
+                + content.replace("{author}", author) + "\n";
+    }
+}
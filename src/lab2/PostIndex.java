@@ -0,0 +1,282 @@
+/*
+Inverted index over the posts of a PostStore: latest posts by an author, or containing a word.
+
+Usage:
+    PostIndex index = new PostIndex(posts);
+    posts.append(...); index.refresh();             // after every post
+    long[] ids = new long[6];
+    int n = index.byAuthor("Bot No.42", ids);       // ids of the newest 6 posts by Bot No.42, newest first
+    n = index.containing("moon", ids);              // ... of the newest 6 posts with the word MOON (any case)
+
+    Every author has a posting list: the ids of its posts, in the order they were posted. The newest matches are at
+    the end of the list, so a query reads ids.length entries from the end and never looks at older posts, however
+    many there are. Words are indexed through the post contents: every distinct content (the simulation reuses a
+    few contents over and over, see Post.CONTENT) gets a posting list, and every word maps to the contents it
+    appears in. A post therefore costs two list entries, 16 bytes, whatever its words. A word query merges the ends
+    of the lists of the contents containing it. Words are split on white space and compared ignoring case. The
+    {author} placeholder in a content is not a word; find an author's posts with byAuthor().
+
+    One thread at a time adds the posts appended since the last refresh, in index order, so every posting list is in
+    time order without sorting. refresh() never waits: if another thread is indexing, that thread (or the next
+    refresh) picks the new post up. Queries never lock. They see the posts indexed so far, which is every post up to
+    a refresh or two ago.
+
+    The constructor indexes the posts already in the store, which over a big reopened store takes seconds (see the
+    results); from then on refresh() keeps up post by post.
+
+    Posts a store with retention deletes leave the lists too: a list that fills up drops them before it grows, and
+    once as many posts have been deleted as the store still keeps, refresh() sweeps every list, forgetting the
+    authors with no posts left. So the index holds the posts the store keeps, not every post ever made.
+
+NOTE: Results are at the bottom.
+ */
+
+package lab2;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/** Author and word index over a PostStore, updated incrementally, answering newest-first queries without locks. */
+class PostIndex {
+
+    private static final Postings[] NONE = new Postings[0];
+
+    // Attributes
+    private final PostStore posts;
+    private final ReentrantLock indexing = new ReentrantLock();
+    private final ConcurrentHashMap<String, Postings> byAuthor = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Postings[]> byWord = new ConcurrentHashMap<>();    // lists of contents
+    private final Map<String, Postings> byContent = new HashMap<>();                         // guarded by indexing
+    private volatile long next;                     // first post not indexed yet; written under indexing
+    private long swept;                             // store's first() at the last sweep; guarded by indexing
+
+    /**
+     * Constructor for object initialization. Indexes the posts already in the store.
+     * @param posts: PostStore type. The posts to index.
+     */
+    PostIndex(PostStore posts) {
+        this.posts = posts;
+        this.next = posts.first();
+        this.swept = next;
+        refresh();
+    }
+
+    /** Index whatever has been posted since the last refresh, unless another thread is at it already. */
+    public void refresh() {
+        if (!indexing.tryLock()) {
+            return;
+        }
+        try {
+            catchUp();
+        } finally {
+            indexing.unlock();
+        }
+    }
+
+    /** Index the posts appended since the last time, and sweep out deleted ones when it pays. Holds indexing. */
+    private void catchUp() {
+        long size = posts.size();
+        long first = posts.first();
+        long id = Math.max(next, first);
+        while (id < size) {
+            Post post;
+            try {
+                post = posts.get(id);
+            } catch (IndexOutOfBoundsException e) {
+                // Retention deleted it after first() was read above: skip to the oldest post still kept
+                long kept = posts.first();
+                if (kept <= id) {
+                    throw e;
+                }
+                first = kept;
+                id = kept;
+                continue;
+            }
+            add(id++, post, first);
+        }
+        next = size;
+        // A sweep reads every list, so only do it once as many posts are deleted as are kept: O(1) per deleted post
+        if (first - swept > 0 && first - swept >= size - first) {
+            sweep(first);
+            swept = first;
+        }
+    }
+
+    /** Drop the ids below first from every list, and the authors left without posts. Holds indexing. */
+    private void sweep(long first) {
+        // Only this thread adds to the lists, so an author whose list is empty here stays empty until removed
+        byAuthor.values().removeIf(postings -> postings.trim(first));
+        for (Postings content : byContent.values()) {
+            content.trim(first);
+        }
+    }
+
+    /** @return the number of posts indexed so far (counting those a store has deleted since). */
+    public long indexed() {
+        return next;
+    }
+
+    /**
+     * Find the newest posts by an author.
+     * @param author: String type. The author's name, exactly.
+     * @param ids: long array type. Filled with the ids of the newest matches, newest first; its length is how many
+     *  to get.
+     * @return how many ids were filled in.
+     */
+    public int byAuthor(String author, long[] ids) {
+        Postings postings = byAuthor.get(author);
+        return postings == null ? 0 : newest(new Postings[] {postings}, ids);
+    }
+
+    /**
+     * Find the newest posts containing a word.
+     * @param word: String type. The word, in any case.
+     * @param ids: long array type. Filled with the ids of the newest matches, newest first; its length is how many
+     *  to get.
+     * @return how many ids were filled in.
+     */
+    public int containing(String word, long[] ids) {
+        return newest(byWord.getOrDefault(word.toLowerCase(Locale.ROOT), NONE), ids);
+    }
+
+    /** Add one post to its author's and its content's posting list. Holds indexing. */
+    private void add(long id, Post post, long first) {
+        byAuthor.computeIfAbsent(post.author(), author -> new Postings()).add(id, first);
+
+        Postings content = byContent.get(post.content());
+        if (content == null) {
+            content = new Postings();
+            byContent.put(post.content(), content);
+            // A new content: list it under each of its words
+            for (String word : post.content().replace("{author}", " ").toLowerCase(Locale.ROOT).split("\\s+")) {
+                if (!word.isEmpty()) {
+                    Postings[] lists = byWord.getOrDefault(word, NONE);
+                    if (!Arrays.asList(lists).contains(content)) {
+                        Postings[] grown = Arrays.copyOf(lists, lists.length + 1);
+                        grown[lists.length] = content;
+                        byWord.put(word, grown);
+                    }
+                }
+            }
+        }
+        content.add(id, first);
+    }
+
+    /**
+     * Merge the ends of a few posting lists, newest first, skipping posts a store has deleted.
+     * @param lists: the posting lists.
+     * @param ids: long array type. Filled with the newest ids.
+     * @return how many ids were filled in.
+     */
+    private int newest(Postings[] lists, long[] ids) {
+        long first = posts.first();
+        long[][] entries = new long[lists.length][];
+        int[] cursor = new int[lists.length];
+        for (int k = 0; k < lists.length; k++) {
+            // One read of the list's entries, so the size and the array belong together
+            Entries current = lists[k].entries;
+            cursor[k] = current.size;
+            entries[k] = current.ids;
+        }
+        int found = 0;
+        while (found < ids.length) {
+            int best = -1;
+            for (int k = 0; k < lists.length; k++) {
+                if (cursor[k] > 0 && (best < 0 || entries[k][cursor[k] - 1] > entries[best][cursor[best] - 1])) {
+                    best = k;
+                }
+            }
+            if (best < 0 || entries[best][cursor[best] - 1] < first) {
+                break;
+            }
+            ids[found++] = entries[best][--cursor[best]];
+        }
+        return found;
+    }
+
+    /** Ids of matching posts in the order they were posted; one writer (the indexing thread), any number of readers. */
+    private static final class Postings {
+        volatile Entries entries = new Entries(new long[2], 0);
+
+        /** Append an id; a full array drops the ids below first before it grows. */
+        void add(long id, long first) {
+            Entries current = entries;
+            int size = current.size;
+            if (size < current.ids.length) {
+                current.ids[size] = id;
+                current.size = size + 1;
+                return;
+            }
+            // Copy before publishing the new entries, so readers find every entry below size in whichever they see
+            int from = current.from(first);
+            long[] grown = new long[Math.max(2, (size - from) * 2)];
+            System.arraycopy(current.ids, from, grown, 0, size - from);
+            grown[size - from] = id;
+            entries = new Entries(grown, size - from + 1);
+        }
+
+        /**
+         * Drop the ids below first.
+         * @return true if no ids are left.
+         */
+        boolean trim(long first) {
+            Entries current = entries;
+            int from = current.from(first);
+            int live = current.size - from;
+            if (from > 0) {
+                entries = new Entries(Arrays.copyOfRange(current.ids, from, from + Math.max(2, live)), live);
+            }
+            return live == 0;
+        }
+    }
+
+    /** A posting list's array and how much of it is filled; replaced whole when the list grows or is trimmed. */
+    private static final class Entries {
+        final long[] ids;
+        volatile int size;
+
+        Entries(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        /** @return the position of the oldest id not below first. */
+        int from(long first) {
+            int at = Arrays.binarySearch(ids, 0, size, first);
+            return at >= 0 ? at : -at - 1;
+        }
+    }
+}
+
+
+/*
+Results (1 CPU sandbox, JDK 17, -Xmx4g; 20000000 posts in a PostLog by 1000000 authors, a few authors posting far
+more than the rest, over 20 contents: 9 with MOON, 1 with RARE used by one post in 10000; queries for the newest 6):
+
+    new PostIndex over the 20000000 posts       24.5 s (1.2 us per post), 721 MB of heap (36.0 bytes per post)
+
+    query                           PostIndex       walking back through the log
+    byAuthor, a frequent author       0.32 us
+    byAuthor, a rare author           1.18 us          2707 ms
+    containing("moon")                0.48 us
+    containing("rare")                0.12 us           9.2 ms
+    containing(a word in no post)     0.12 us
+
+A query costs the same however many posts there are, since it only reads the last few entries of one to ten
+posting lists. Without the index, the newest posts of a rare author mean reading nearly the whole log. The 16 bytes a
+post strictly needs (two long ids; ints would stop at 2^31 posts) grow to 36 with the room every list keeps to grow
+into plus two small objects per author.
+
+Keeping it up to date costs post() about 0.5 us with 1000 accounts (1.7 -> 2.2 us) and 2.5-3 us with a million
+(5.9 -> 8.7 us). With a million accounts that is mostly cache misses, finding the author's list among a million. A
+check with 4 threads posting 250000 posts each over 100 authors, while another thread kept querying one of them,
+found nothing out of order and nothing by the wrong author. In the end all 1000000 posts were in the index exactly
+once. Over a store whose ids start at 5000000000, queries returned the right ids, and after retention deleted every
+post of an author, that author was gone from the index and its posts from the word lists. Retention deleting posts
+in the middle of a refresh made it skip to the oldest post still kept and carry on.
+ */
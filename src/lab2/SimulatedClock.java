@@ -0,0 +1,53 @@
+/*
+Simulated wall clock for the social network simulation, optionally running faster than real time.
+
+Usage:
+    SimulatedClock clock = new SimulatedClock(60);  // an hour of simulated activity per real minute
+    long now = clock.millis();                      // simulated time, starting from the real time right now
+    long delay = clock.realNanos(20_000);           // how long 20 simulated seconds really take
+
+    The clock starts at the real time it was created and then advances speedUp times as fast, so post times stay
+    believable and evenly spread however compressed the run is. It reads System.nanoTime(), which never jumps back
+    when the system clock is adjusted.
+ */
+
+package lab2;
+
+
+/** Wall clock that runs a fixed number of times faster than real time. */
+class SimulatedClock {
+
+    // Attributes
+    private final double speedUp;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Constructor for object initialization. The clock starts at the current real time.
+     * @param speedUp: double type. Simulated seconds per real second; 1 is real time.
+     */
+    SimulatedClock(double speedUp) {
+        if (!(speedUp > 0) || Double.isInfinite(speedUp)) {
+            throw new IllegalArgumentException("speed-up " + speedUp + " is not a positive number");
+        }
+        this.speedUp = speedUp;
+    }
+
+    /** @return simulated seconds per real second. */
+    public double speedUp() {
+        return speedUp;
+    }
+
+    /** @return the simulated time, in milliseconds since the epoch. */
+    public long millis() {
+        return startMillis + (long) ((System.nanoTime() - startNanos) / 1e6 * speedUp);
+    }
+
+    /**
+     * @param simulatedMillis: long type. A simulated duration in milliseconds.
+     * @return how long it takes in real time, in nanoseconds.
+     */
+    public long realNanos(long simulatedMillis) {
+        return (long) (simulatedMillis * 1e6 / speedUp);
+    }
+}
@@ -8,196 +8,42 @@ Usage:
     input the number of accounts you want to simulate. The program will then go into an infinite loop to simulate social
     network. To stop the simulation, press enter at the terminal.
 
+    Accounts don't get a thread each (see AccountScheduler), so a million of them run fine. Follow the number of
+    accounts with a speed-up factor, e.g. "1000000 60", to replay an hour of activity per minute: accounts step away
+    for simulated seconds and posts are stamped with simulated time.
+
+    Run java SocialNetwork <directory> to keep the posts on disk in that directory (see MappedPostLog): the
+    simulation then picks up the posts of the previous run, and old posts are deleted once they take more than 1 GB
+    or are more than a week old.
+
     * To change post specific attributes (such as content), tap into class Post.
     * To change the author name logic, tap into main() in class Accounts.
+    * To change who follows whom, or how many posts each home timeline keeps, tap into followGraph() in class Accounts.
+    * To change how the output is batched, or whether it drops or waits when it can't keep up, tap into OutputSink.
+    * To look posts up by author or by word, see viewBy() and search() in class Accounts (and PostIndex).
 
 NOTE: Discussions are at the bottom.
 */
 
 package lab2;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.text.SimpleDateFormat;
-import java.util.*;
-
-
-/** Post class to construct a post object in social network simulation */
-class Post {
-
-    // Attributes
-    private final String author;
-    private final String content;
-    private final String postTime;
-
-    /** Constructor
-     * @param author: String type. The author/creator of the post.
-     */
-    Post(String author) {
-
-        // Assign author to the post
-        this.author = author;
-
-        // Make a fake post with author's name
-        this.content = author + " TO THE MOON !!!!!!";
-
-        // Get current date as post time
-        // Reference: https://stackabuse.com/how-to-get-current-date-and-time-in-java/
-        Date date = new Date(System.currentTimeMillis());
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd 'at' HH:mm:ss z");
-        this.postTime = formatter.format(date);
-    }
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
-    /** Retrieve post attributes and print the formatted version of the post. */
-    public void printPostDetail() {
-        System.out.println("Author: " + author);
-        System.out.println("Time Posted: " + postTime);
-        System.out.println("Post Content: ");
-        System.out.println(content);
-        System.out.println();
-    }
-}
-
-
-/** Concurrent accounts for social network simulations */
-class Accounts {
-
-    // Declare volatile list to ensure posts are added/retrieved concurrently with no issue
-    private volatile List<Post> posts = Collections.synchronizedList(new ArrayList<Post>());
-
-    /** Synchronized post function to add posts to the volatile list.
-     *
-     * @param author: String type. The author/creator of the post.
-     */
-    public synchronized void post(String author){
-
-        // Create new post
-        Post simulatedPost = new Post(author);
-
-        // Add to list
-        posts.add(simulatedPost);
-
-        // Print out how many posts there are currently
-        System.out.println("There are currently " + posts.size() + " posts. \n");
-    }
-
-    /** Synchronized view function to retrieve the latest 6 posts. */
-    public synchronized void view() {
-
-        // Get the last 6 posts and reorder them with the last post in front
-        List<Post> latestSixPosts = new ArrayList<>(posts.subList(Math.max(posts.size() - 6, 0), posts.size()));
-        Collections.reverse(latestSixPosts);
-
-        // Print out each post's details using post's built-in function
-        for (Post post: latestSixPosts){
-            post.printPostDetail();
-        }
-    }
-
-    /** Single account social network simulation.
-     *
-     * At the beginning of the simulation, the function creates a fake account/author.
-     *  It will then goes into an infinite loop for simulation. In each iteration, the
-     *  function will pick a random number of seconds for the thread to sleep to simulate
-     *  someone not using social network. Then, the function will randomly pick either
-     *  post or view action.
-     *
-     * @throws InterruptedException: Throws an exception is the thread is interrupted.
-     */
-    public void simulate(String author) throws InterruptedException {
-
-        // Running a infinite loop until thread is interrupted
-        while (true) {
-
-            // Get a random number of seconds for the thread to sleep
-            int stepAway = (int)(Math.random() * 20000);
-
-            // Simulate a person setting social media aside for a while
-            System.out.println(author + " tries to step away from social media for " + stepAway / 1000 + " seconds... \n");
-            Thread.sleep(stepAway);
-
-            // Randomly pick either post or view action
-            if (Math.random() < 0.5) {
-                System.out.println(author + " couldn't resist the temptation and posted something...");
-                post(author);
-
-            }
-            else {
-                System.out.println(author + " couldn't resist the temptation and checks the latest 6 posts, which are: ");
-                view();
-            }
-        }
-    }
-
-    /** Main function for social network simulation with multiple accounts.
-     *
-     * With the given input number of accounts to simulate, the function will create the
-     *  corresponding number of threads with runnable interface, where single account
-     *  simulation is called. Once all threads are created, the function will start the
-     *  threads and the simulation won't stop until it is interrupted by terminal input
-     *  (enter / next line).
-     *
-     * @throws IOException: Added for when readLine() is called.
-     */
-    public void main() throws IOException {
-
-        // Catch input numbers
-        BufferedReader reader = new BufferedReader (new InputStreamReader(System.in));
-
-        System.out.println("Enter the number of accounts you want for simulation: ");
-
-        // Split the string into individual elements and get the first element as input
-        String[] inputNums = reader.readLine().split(" ");
-        int numAccounts = Integer.parseInt(inputNums[0]);
-
-        // Create random number generator for account name creation
-        // Reference: https://www.geeksforgeeks.org/java-util-random-nextint-java/
-        Random random = new Random();
-
-        // Create threads using Runnable
-        ArrayList<Thread> accounts = new ArrayList<>();
-
-        for (int i = 0; i < numAccounts; i++) {
-            // Create the simulated account with a random author
-            String author = "Bot No." + random.nextInt(numAccounts * 100000);
-
-            Thread account = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        simulate(author);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            });
-
-            accounts.add(account);
-        }
-
-        // Start simulation
-        for (Thread account: accounts){
-            account.start();
-        }
-
-        // Give a prompt to stop the simulation
-        System.out.println("PRESS ENTER TO STOP SIMULATION");
-        reader.readLine();
-
-        // Once enter is detected, stop all threads
-        for (Thread account: accounts){
-            account.interrupt();
-        }
-
-    }
-}
 
 /** Main class for social network simulation */
 public class SocialNetwork {
 
     public static void main(String[] args) throws IOException {
-        new Accounts().main();
+        if (args.length == 0) {
+            new Accounts().main();
+            return;
+        }
+        // Posts on disk: 64 MB segments, at most 1 GB of them, none older than a week
+        try (MappedPostLog posts = MappedPostLog.open(Paths.get(args[0]), 64 << 20, 1L << 30,
+                TimeUnit.DAYS.toMillis(7))) {
+            new Accounts(posts).main();
+        }
     }
 }
 
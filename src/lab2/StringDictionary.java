@@ -0,0 +1,68 @@
+/*
+Dictionary encoding for the strings the social network stores over and over (author names, post contents).
+
+Usage:
+    StringDictionary authors = new StringDictionary();
+    int id = authors.idOf("Bot No.42");             // the same id every time for the same string
+    String name = authors.stringOf(id);             // and back
+
+    Every distinct string is kept once, however many posts refer to it; a post just stores the int. Looking up a
+    string that is already known is one ConcurrentHashMap get; only the first sighting of a string takes the
+    dictionary's lock. stringOf() never locks.
+ */
+
+package lab2;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/** Two-way mapping between strings and small dense int ids (0, 1, 2, ... in order of first sighting). */
+class StringDictionary {
+
+    // Attributes
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] strings = new String[64];     // replaced by a larger copy when full
+    private int size;                                       // guarded by this
+
+    /**
+     * Retrieve the id of a string, adding the string if it is new.
+     * @param string: String type. The string.
+     * @return its id.
+     */
+    public int idOf(String string) {
+        Integer id = ids.get(string);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(string);
+            if (id == null) {
+                // Store the string before publishing its id, so whoever gets the id can look the string up
+                String[] current = strings;
+                if (size == current.length) {
+                    current = Arrays.copyOf(current, size * 2);
+                }
+                current[size] = string;
+                strings = current;
+                id = size++;
+                ids.put(string, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Retrieve a string by id.
+     * @param id: integer type. An id handed out by idOf().
+     * @return the string.
+     */
+    public String stringOf(int id) {
+        return strings[id];
+    }
+
+    /** @return the number of distinct strings. */
+    public synchronized int size() {
+        return size;
+    }
+}
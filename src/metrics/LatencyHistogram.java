@@ -0,0 +1,136 @@
+/*
+Compact latency histogram for timing threaded programs (the jungle, the social network, ...).
+
+Values are counted in log-linear buckets: every power of two is split into 16 equal sub-buckets, so any recorded value
+is reported within about 6% of its true value, and the whole range of a long fits in under a thousand buckets. The
+histogram is NOT thread-safe: give each thread its own and merge them when reading.
+ */
+
+package metrics;
+
+
+/** Log-linear histogram of non-negative long values (usually nanoseconds). */
+public class LatencyHistogram {
+
+    // Values below 32 get a bucket each; above that, every power of two gets 16 sub-buckets
+    private static final int LINEAR = 32;
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BITS = 4;
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS) * SUB_BUCKETS;
+
+    // Attributes
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long sum;
+    private long max;
+
+    /**
+     * Count one value.
+     * @param value: long type. The value to record; negative values count as 0.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketOf(value)]++;
+        total++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Add every value counted by another histogram to this one.
+     * @param other: the histogram to merge in.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /** Forget every value counted so far. */
+    public void reset() {
+        java.util.Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /** @return how many values have been recorded. */
+    public long count() {
+        return total;
+    }
+
+    /** @return the largest value recorded, exactly. */
+    public long max() {
+        return max;
+    }
+
+    /** @return the mean of the recorded values, exactly. */
+    public double mean() {
+        return total == 0 ? 0.0 : (double) sum / total;
+    }
+
+    /**
+     * Approximate value at the given percentile.
+     * @param percentile: double type. Between 0 and 100, e.g. 99.9.
+     * @return the upper edge of the bucket holding that percentile (never more than max()), or 0 if empty.
+     */
+    public long percentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, upperEdgeOf(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Format p50/p99/p999/max in milliseconds, assuming the values are nanoseconds.
+     * @return a one-line summary.
+     */
+    public String summaryMillis() {
+        return String.format("p50 %.3f ms   p99 %.3f ms   p999 %.3f ms   max %.3f ms", percentile(50) / 1e6,
+                percentile(99) / 1e6, percentile(99.9) / 1e6, max / 1e6);
+    }
+
+    /**
+     * Find the bucket for a value.
+     * @param value: long type. Non-negative value.
+     * @return the bucket index.
+     */
+    private static int bucketOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        // Keep the top 5 significant bits: the leading 1 picks the power of two, the next 4 the sub-bucket
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR + (shift - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Largest value that falls into a bucket.
+     * @param bucket: integer type. The bucket index.
+     * @return the upper edge of the bucket.
+     */
+    private static long upperEdgeOf(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR) / SUB_BUCKETS + 1;
+        long sub = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,398 @@
+/*
+A ReentrantLock that keeps track of how it is used.
+
+Usage:
+    Lock lock = new InstrumentedLock("ladder");         // drop-in for new ReentrantLock()
+    ...
+    new Watchdog(System.out, 1, 5, TimeUnit.SECONDS, false).start();     // reports the most contended locks
+
+    Every lock counts its acquisitions, how many of them had to wait and for how long, and how long the lock was
+    held. An acquisition that gets the lock right away costs one tryLock and a counter increment; only acquisitions
+    that really wait read the clock. Hold times are measured for every contended acquisition and for one in
+    HOLD_SAMPLE of the others, since two System.nanoTime() calls would otherwise cost as much as the lock itself
+    (~50 ns each on the test machine). The counters are LongAdders, so threads recording at the same time don't
+    contend on them.
+
+    A watchdog spots a stalled owner by checking whether the same thread still holds the lock without it having
+    changed hands in between (see ownerships()), so stall detection needs no clock reads at all. That only works
+    while recording, so a watchdog skips stall checks when recording is off.
+
+    Time spent in Condition.await() does not count as holding the lock, and getting the lock back after await() does
+    not count as waiting for it: the thread is waiting for a signal then, not for the lock.
+
+    Recording is off until a Watchdog starts (or setRecording(true)), so a lock nobody watches costs one volatile
+    read per call over a plain ReentrantLock. setRecording(false) turns it off again for every lock at once.
+ */
+
+package watchdog;
+
+// Java Imports
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/** ReentrantLock with wait and hold time accounting, for the Watchdog. */
+public class InstrumentedLock extends ReentrantLock {
+
+    private static final long serialVersionUID = 1L;
+
+    // Every instrumented lock that is still in use, for the watchdog to look at
+    private static final Queue<WeakReference<InstrumentedLock>> LOCKS = new ConcurrentLinkedQueue<>();
+    private static volatile boolean recording;
+    private static volatile long recordingSwitches;     // times recording was turned on or off, see ownerships()
+    private static final int HOLD_SAMPLE = 16;      // time one in this many uncontended holds
+
+    // Attributes
+    private final String name;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder resumes = new LongAdder();          // got the lock back after a Condition wait
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder timedHolds = new LongAdder();
+    private final LongAdder holdNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong maxHoldNanos = new AtomicLong();
+    private long heldSince;                     // System.nanoTime() the current hold started, 0 if it isn't timed
+                                                //  (only touched by the owner, so the lock itself guards it)
+
+    /**
+     * Constructor for object initialization.
+     * @param name: string type. Name to report the lock under.
+     */
+    public InstrumentedLock(String name) {
+        this(name, false);
+    }
+
+    /**
+     * Constructor for object initialization.
+     * @param name: string type. Name to report the lock under.
+     * @param fair: boolean type. Same as for ReentrantLock.
+     */
+    public InstrumentedLock(String name, boolean fair) {
+        super(fair);
+        this.name = name;
+        LOCKS.add(new WeakReference<>(this));
+    }
+
+    /**
+     * Turn the accounting on or off for every instrumented lock.
+     * @param on: boolean type. Whether to record.
+     */
+    public static synchronized void setRecording(boolean on) {
+        if (recording != on) {
+            recording = on;
+            recordingSwitches++;
+        }
+    }
+
+    /** @return whether the locks are recording right now. */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /** @return every instrumented lock that is still reachable. */
+    public static List<InstrumentedLock> all() {
+        List<InstrumentedLock> live = new ArrayList<>();
+        for (Iterator<WeakReference<InstrumentedLock>> it = LOCKS.iterator(); it.hasNext(); ) {
+            InstrumentedLock lock = it.next().get();
+            if (lock == null) {
+                it.remove();
+            } else {
+                live.add(lock);
+            }
+        }
+        return live;
+    }
+
+    // Locking
+
+    @Override
+    public void lock() {
+        if (!recording) {
+            super.lock();
+            return;
+        }
+        // A fair lock must not barge ahead of the queue, so it always takes the timed path
+        if (!isFair() && super.tryLock()) {
+            acquired(0);
+            return;
+        }
+        long start = System.nanoTime();
+        super.lock();
+        acquired(start);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (!recording) {
+            super.lockInterruptibly();
+            return;
+        }
+        if (!isFair() && super.tryLock()) {
+            acquired(0);
+            return;
+        }
+        long start = System.nanoTime();
+        super.lockInterruptibly();
+        acquired(start);
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (!super.tryLock()) {
+            return false;
+        }
+        acquired(0);
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!recording) {
+            return super.tryLock(timeout, unit);
+        }
+        if (!isFair() && super.tryLock()) {
+            acquired(0);
+            return true;
+        }
+        long start = System.nanoTime();
+        if (!super.tryLock(timeout, unit)) {
+            return false;
+        }
+        acquired(start);
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        if (getHoldCount() == 1) {
+            released();
+        }
+        super.unlock();
+    }
+
+    /**
+     * The calling thread just got the lock.
+     * @param waitStart: long type. System.nanoTime() it started waiting at, 0 if it got the lock right away.
+     */
+    private void acquired(long waitStart) {
+        if (!recording || getHoldCount() > 1) {
+            // Re-entering a lock we already hold is neither an acquisition nor a wait
+            return;
+        }
+        acquisitions.increment();
+        if (waitStart != 0) {
+            long now = System.nanoTime();
+            long waited = now - waitStart;
+            if (waited > 0) {
+                contended.increment();
+                waitNanos.add(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+            }
+            heldSince = now;
+        } else if (ThreadLocalRandom.current().nextInt(HOLD_SAMPLE) == 0) {
+            heldSince = System.nanoTime();
+        }
+    }
+
+    /** The calling thread is about to let go of the lock (or wait on one of its conditions). */
+    private void released() {
+        long since = heldSince;
+        if (since == 0) {
+            return;
+        }
+        heldSince = 0;
+        long held = System.nanoTime() - since;
+        timedHolds.increment();
+        holdNanos.add(held);
+        maxHoldNanos.accumulateAndGet(held, Math::max);
+    }
+
+    // Conditions
+
+    @Override
+    public Condition newCondition() {
+        return new TimedCondition(super.newCondition());
+    }
+
+    @Override
+    public boolean hasWaiters(Condition condition) {
+        return super.hasWaiters(unwrap(condition));
+    }
+
+    @Override
+    public int getWaitQueueLength(Condition condition) {
+        return super.getWaitQueueLength(unwrap(condition));
+    }
+
+    @Override
+    protected Collection<Thread> getWaitingThreads(Condition condition) {
+        return super.getWaitingThreads(unwrap(condition));
+    }
+
+    private static Condition unwrap(Condition condition) {
+        return condition instanceof TimedCondition ? ((TimedCondition) condition).inner : condition;
+    }
+
+    /** Condition that stops the hold clock while its thread waits. */
+    private final class TimedCondition implements Condition {
+        private final Condition inner;
+
+        TimedCondition(Condition inner) {
+            this.inner = inner;
+        }
+
+        private void pause() {
+            if (isHeldByCurrentThread()) {
+                released();
+            }
+        }
+
+        private void resume() {
+            if (recording && isHeldByCurrentThread()) {
+                resumes.increment();
+            }
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            pause();
+            try {
+                inner.await();
+            } finally {
+                resume();
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            pause();
+            try {
+                inner.awaitUninterruptibly();
+            } finally {
+                resume();
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            pause();
+            try {
+                return inner.awaitNanos(nanosTimeout);
+            } finally {
+                resume();
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            pause();
+            try {
+                return inner.await(time, unit);
+            } finally {
+                resume();
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            pause();
+            try {
+                return inner.awaitUntil(deadline);
+            } finally {
+                resume();
+            }
+        }
+
+        @Override
+        public void signal() {
+            inner.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            inner.signalAll();
+        }
+    }
+
+    // Reading
+
+    /** @return the name the lock was created with. */
+    public String name() {
+        return name;
+    }
+
+    /** @return the thread holding the lock right now, or null. */
+    public Thread owner() {
+        return getOwner();
+    }
+
+    /**
+     * Count of the times a thread became the owner while recording: acquisitions plus returns from Condition waits,
+     *  plus the times recording was switched, since the lock may change hands uncounted while it is off. If
+     *  recording is on and the owner is the same thread at two points in time and this count hasn't moved, it held
+     *  the lock the whole time.
+     * @return the number of ownerships so far.
+     */
+    public long ownerships() {
+        return acquisitions.sum() + resumes.sum() + recordingSwitches;
+    }
+
+    /** @return number of times the lock was taken (not counting re-entry). */
+    public long acquisitions() {
+        return acquisitions.sum();
+    }
+
+    /** @return number of times taking the lock meant waiting for another thread. */
+    public long contendedAcquisitions() {
+        return contended.sum();
+    }
+
+    /** @return total time threads waited for the lock. */
+    public long waitNanos() {
+        return waitNanos.sum();
+    }
+
+    /** @return number of holds that were timed (every contended one, and a sample of the rest). */
+    public long timedHolds() {
+        return timedHolds.sum();
+    }
+
+    /** @return total time of the timed holds; divide by timedHolds() for the average hold. */
+    public long holdNanos() {
+        return holdNanos.sum();
+    }
+
+    /**
+     * Longest single wait since the last call, which starts the next period.
+     * @return the longest wait in nanoseconds.
+     */
+    public long takeMaxWaitNanos() {
+        return maxWaitNanos.getAndSet(0);
+    }
+
+    /**
+     * Longest single timed hold since the last call, which starts the next period.
+     * @return the longest hold in nanoseconds.
+     */
+    public long takeMaxHoldNanos() {
+        return maxHoldNanos.getAndSet(0);
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + super.toString() + ")";
+    }
+}
@@ -0,0 +1,426 @@
+/*
+Contention and deadlock watchdog for threaded programs (the jungle, the social network, ...).
+
+Usage:
+    Watchdog dog = new Watchdog(System.out, 1, 5, TimeUnit.SECONDS, false);
+    dog.start();            // samples every second on a daemon thread
+    ...
+    dog.stop();
+
+    java watchdog.Watchdog  (demo: the x/y deadlock from the Feb16 scratchpad, plus one busy lock)
+
+    Every period the watchdog
+        - asks the ThreadMXBean for deadlocked threads (synchronized blocks and java.util.concurrent locks alike),
+          and prints each new cycle once, with who waits for which lock held by whom and full stack traces;
+        - looks for InstrumentedLocks that have had the same owner, without changing hands, for longer than the stall
+          time (give or take one period), and prints the owner's stack once per stall;
+        - with everyPeriod set (or whenever it found a problem), prints the most contended InstrumentedLocks (wait
+          and hold times over the period; hold times are sampled) and the threads that spent the most time blocked
+          or waiting.
+
+    start() turns on InstrumentedLock recording, and stop() turns it off again once no watchdog is running. Recording
+    costs an acquisition that gets the lock right away a tryLock and a LongAdder increment; only acquisitions that
+    wait read the clock, and of the others one in sixteen times its hold. Stalls are found from each lock's count of
+    ownerships, not from timestamps. The watchdog thread itself only wakes up once a period. The numbers at the bottom
+    of jungle/LadderBenchmark.java measure the total.
+ */
+
+package watchdog;
+
+// Java Imports
+import java.io.PrintStream;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/** Periodically checks the JVM for deadlocks, stalled lock owners and lock contention. */
+public class Watchdog {
+
+    private static final int TOP = 5;
+    private static int running;                     // started watchdogs, guarded by Watchdog.class
+
+    // Attributes
+    private final PrintStream out;
+    private final long periodNanos;
+    private final long stallNanos;
+    private final boolean everyPeriod;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private ScheduledExecutorService sampler;
+
+    // What the previous check saw (guarded by this)
+    private final Map<InstrumentedLock, long[]> lastLocks = new WeakHashMap<>();
+    private final Map<InstrumentedLock, Holding> holdings = new WeakHashMap<>();
+    private Map<Long, long[]> lastThreads = new HashMap<>();
+    private Set<Long> deadlocked = new TreeSet<>();
+    private long lastCheck = System.nanoTime();
+
+    /**
+     * Constructor for object initialization.
+     * @param out: where to print reports.
+     * @param period: long type. Time between checks.
+     * @param stallAfter: long type. How long a lock may be held before its owner counts as stalled.
+     * @param unit: unit of period and stallAfter.
+     * @param everyPeriod: boolean type. Print the contention tables every period, not only along with a problem.
+     */
+    public Watchdog(PrintStream out, long period, long stallAfter, TimeUnit unit, boolean everyPeriod) {
+        this.out = out;
+        this.periodNanos = unit.toNanos(period);
+        this.stallNanos = unit.toNanos(stallAfter);
+        this.everyPeriod = everyPeriod;
+    }
+
+    /** Start checking every period on a background daemon thread, with InstrumentedLock recording on. */
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        synchronized (Watchdog.class) {
+            if (running++ == 0) {
+                InstrumentedLock.setRecording(true);
+            }
+        }
+        // Lets the JVM keep per-thread blocked and waited times; costs a timestamp whenever a thread blocks
+        if (threads.isThreadContentionMonitoringSupported()) {
+            threads.setThreadContentionMonitoringEnabled(true);
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        sampler.scheduleAtFixedRate(() -> {
+            String report = check();
+            if (!report.isEmpty()) {
+                out.print(report);
+            }
+        }, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Stop checking, and stop recording unless another watchdog is still running. */
+    public synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+            synchronized (Watchdog.class) {
+                if (--running == 0) {
+                    InstrumentedLock.setRecording(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check once, right now.
+     * @return the report, or an empty string if there was nothing worth saying.
+     */
+    public synchronized String check() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - lastCheck) / 1e9;
+        lastCheck = now;
+
+        StringBuilder problems = new StringBuilder();
+        checkDeadlocks(problems);
+        checkStalls(problems);
+        String locks = contendedLocks(seconds);
+        String busyThreads = blockedThreads(seconds);
+
+        if (problems.length() == 0 && !everyPeriod) {
+            return "";
+        }
+        StringBuilder report = new StringBuilder();
+        report.append("=== Watchdog ").append(LocalTime.now().truncatedTo(ChronoUnit.MILLIS)).append(" ===\n");
+        report.append(problems).append(locks).append(busyThreads).append('\n');
+        return report.toString();
+    }
+
+    // Deadlocks
+
+    private void checkDeadlocks(StringBuilder report) {
+        long[] ids = threads.findDeadlockedThreads();
+        Set<Long> now = new TreeSet<>();
+        if (ids != null) {
+            for (long id : ids) {
+                now.add(id);
+            }
+        }
+        // Report every cycle once, not every period for as long as it lasts
+        boolean fresh = !deadlocked.containsAll(now);
+        deadlocked = now;
+        if (ids == null || !fresh) {
+            return;
+        }
+
+        Map<Long, Thread> byId = new HashMap<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            byId.put(t.getId(), t);
+        }
+        report.append("DEADLOCK between ").append(ids.length).append(" threads:\n");
+        for (ThreadInfo info : threads.getThreadInfo(ids, true, true)) {
+            if (info == null) {
+                continue;
+            }
+            Thread thread = byId.get(info.getThreadId());
+            report.append(String.format("  \"%s\" (id %d) is %s waiting for %s held by \"%s\" (id %d)%n",
+                    info.getThreadName(), info.getThreadId(), info.getThreadState(),
+                    lockName(info.getLockInfo(), thread), info.getLockOwnerName(), info.getLockOwnerId()));
+            List<String> held = new ArrayList<>();
+            for (InstrumentedLock lock : InstrumentedLock.all()) {
+                if (thread != null && lock.owner() == thread) {
+                    held.add(lock.name());
+                }
+            }
+            if (!held.isEmpty()) {
+                report.append("    holding ").append(String.join(", ", held)).append('\n');
+            }
+            appendStack(report, info.getStackTrace());
+        }
+    }
+
+    /** Name of the lock a thread waits for, using the InstrumentedLock name if it is one. */
+    private static String lockName(LockInfo lock, Thread waiter) {
+        if (waiter != null) {
+            for (InstrumentedLock candidate : InstrumentedLock.all()) {
+                if (candidate.hasQueuedThread(waiter)) {
+                    return candidate.name();
+                }
+            }
+        }
+        return lock == null ? "?" : lock.toString();
+    }
+
+    // Stalls
+
+    /** One owner's hold on a lock, as first seen by a check. */
+    private static final class Holding {
+        final Thread owner;
+        final long ownerships;      // the lock's ownership count when the hold was first seen
+        final long seenAt;          // System.nanoTime() of that check
+        boolean reported;
+
+        Holding(Thread owner, long ownerships, long seenAt) {
+            this.owner = owner;
+            this.ownerships = ownerships;
+            this.seenAt = seenAt;
+        }
+    }
+
+    private void checkStalls(StringBuilder report) {
+        // The ownership count stands still while nothing records, which would look like every owner stalled
+        if (!InstrumentedLock.isRecording()) {
+            holdings.clear();
+            return;
+        }
+        long now = System.nanoTime();
+        for (InstrumentedLock lock : InstrumentedLock.all()) {
+            // Read the count before the owner: if the owner is the same afterwards and the count hasn't moved, the
+            //  lock never changed hands in between
+            long ownerships = lock.ownerships();
+            Thread owner = lock.owner();
+            Holding holding = holdings.get(lock);
+            if (owner == null || deadlocked.contains(owner.getId())) {
+                // Deadlocked owners have been reported already, with more to say
+                holdings.remove(lock);
+                continue;
+            }
+            if (holding == null || holding.owner != owner || holding.ownerships != ownerships) {
+                holdings.put(lock, new Holding(owner, ownerships, now));
+                continue;
+            }
+            // Held at least since the first check that saw it; report every stall once
+            long heldFor = now - holding.seenAt;
+            if (heldFor < stallNanos || holding.reported) {
+                continue;
+            }
+            holding.reported = true;
+            report.append(String.format("STALL: lock %s held by \"%s\" for over %.0f ms%n", lock.name(),
+                    owner.getName(), heldFor / 1e6));
+            appendStack(report, owner.getStackTrace());
+        }
+    }
+
+    private static void appendStack(StringBuilder report, StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            report.append("        at ").append(frame).append('\n');
+        }
+    }
+
+    // Contention
+
+    /** Table of the locks threads waited for the longest since the last check. */
+    private String contendedLocks(double seconds) {
+        List<long[]> rows = new ArrayList<>();
+        List<InstrumentedLock> locks = InstrumentedLock.all();
+        for (int i = 0; i < locks.size(); i++) {
+            InstrumentedLock lock = locks.get(i);
+            long[] total = {lock.acquisitions(), lock.contendedAcquisitions(), lock.waitNanos(), lock.timedHolds(),
+                    lock.holdNanos()};
+            long[] last = lastLocks.getOrDefault(lock, new long[total.length]);
+            lastLocks.put(lock, total);
+            long[] delta = new long[8];
+            for (int k = 0; k < total.length; k++) {
+                delta[k] = total[k] - last[k];
+            }
+            delta[5] = lock.takeMaxWaitNanos();
+            delta[6] = lock.takeMaxHoldNanos();
+            delta[7] = i;
+            if (delta[0] > 0) {
+                rows.add(delta);
+            }
+        }
+        if (rows.isEmpty()) {
+            return "";
+        }
+        rows.sort((a, b) -> Long.compare(b[2], a[2]));
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("Most contended locks over the last %.1f s:%n", seconds));
+        table.append(String.format("  %-20s %12s %10s %10s %10s %10s %10s%n", "lock", "acquired/s", "contended",
+                "wait avg", "wait max", "hold avg", "hold max"));
+        for (long[] row : rows.subList(0, Math.min(TOP, rows.size()))) {
+            table.append(String.format("  %-20s %12.0f %9.2f%% %7.3f ms %7.3f ms %7.3f ms %7.3f ms%n",
+                    locks.get((int) row[7]).name(), row[0] / seconds, 100.0 * row[1] / row[0],
+                    row[1] == 0 ? 0 : row[2] / 1e6 / row[1], row[5] / 1e6, row[3] == 0 ? 0 : row[4] / 1e6 / row[3],
+                    row[6] / 1e6));
+        }
+        return table.toString();
+    }
+
+    /** Table of the threads that spent the most time blocked (or waiting) since the last check. */
+    private String blockedThreads(double seconds) {
+        if (!threads.isThreadContentionMonitoringEnabled()) {
+            return "";
+        }
+        Map<Long, long[]> now = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info == null) {
+                continue;
+            }
+            long[] times = {info.getBlockedTime(), info.getWaitedTime()};
+            now.put(info.getThreadId(), times);
+            long[] last = lastThreads.get(info.getThreadId());
+            if (last != null && times[0] - last[0] > 0) {
+                rows.add(new Object[] {info.getThreadName(), times[0] - last[0], times[1] - last[1]});
+            }
+        }
+        lastThreads = now;
+        if (rows.isEmpty()) {
+            return "";
+        }
+        rows.sort((a, b) -> Long.compare((Long) b[1], (Long) a[1]));
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("Most blocked threads over the last %.1f s (synchronized blocks only; "
+                + "waiting includes j.u.c. locks and conditions):%n", seconds));
+        table.append(String.format("  %-20s %12s %12s%n", "thread", "blocked ms", "waiting ms"));
+        for (Object[] row : rows.subList(0, Math.min(TOP, rows.size()))) {
+            table.append(String.format("  %-20s %12d %12d%n", row[0], (Long) row[1], (Long) row[2]));
+        }
+        return table.toString();
+    }
+
+    // Demo
+
+    public static void main(String[] args) throws InterruptedException {
+        // The Feb16 scratchpad: thread 1 does x = 1, y = y + x; thread 2 does y = 2, x = x + y. Each takes the lock
+        //  of the variable it writes first, then the other one, in opposite orders.
+        InstrumentedLock x = new InstrumentedLock("x");
+        InstrumentedLock y = new InstrumentedLock("y");
+        int[] vars = new int[2];
+        Thread t1 = new Thread(() -> {
+            x.lock();
+            try {
+                vars[0] = 1;
+                sleepQuietly(200);
+                y.lock();
+                try {
+                    vars[1] = vars[1] + vars[0];
+                } finally {
+                    y.unlock();
+                }
+            } finally {
+                x.unlock();
+            }
+        }, "thread 1");
+        Thread t2 = new Thread(() -> {
+            y.lock();
+            try {
+                vars[1] = 2;
+                sleepQuietly(200);
+                x.lock();
+                try {
+                    vars[0] = vars[0] + vars[1];
+                } finally {
+                    x.unlock();
+                }
+            } finally {
+                y.unlock();
+            }
+        }, "thread 2");
+
+        // A thread that sleeps while holding a lock, for the stall report
+        InstrumentedLock slow = new InstrumentedLock("slow");
+        Thread sleeper = new Thread(() -> {
+            slow.lock();
+            try {
+                sleepQuietly(2500);
+            } finally {
+                slow.unlock();
+            }
+        }, "sleeper");
+
+        // Plus a few threads fighting over one counter, for the contention table
+        InstrumentedLock counter = new InstrumentedLock("counter");
+        long[] count = new long[1];
+        Thread[] workers = new Thread[4];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(() -> {
+                while (true) {
+                    counter.lock();
+                    try {
+                        count[0]++;
+                    } finally {
+                        counter.unlock();
+                    }
+                }
+            }, "worker " + i);
+        }
+
+        for (Thread t : Arrays.asList(t1, t2, sleeper)) {
+            t.setDaemon(true);
+            t.start();
+        }
+        for (Thread t : workers) {
+            t.setDaemon(true);
+            t.start();
+        }
+
+        Watchdog dog = new Watchdog(System.out, 500, 1000, TimeUnit.MILLISECONDS, true);
+        dog.start();
+        Thread.sleep(2200);
+        dog.stop();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}